@@ -0,0 +1,101 @@
+package com.chat.messmini.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tải tổng hợp cho client inbound channel: pool thread nền tảng so với virtual thread.
+ * <p>
+ * Mỗi thread JMH đóng vai một session gửi một frame rồi chờ handler xử lý xong. Handler ngủ
+ * {@code blockingMillis} để mô phỏng một truy vấn JDBC. Với {@value #SESSIONS} session, pool mặc
+ * định 2 x số CPU ({@code platform}) xếp hàng còn virtual thread thì không; {@code platform-sized}
+ * là pool nền tảng đủ một thread cho mỗi session, mức so sánh công bằng khi không dùng virtual
+ * thread. Chạy với {@code -Djmh.args="InboundExecutor"};
+ * chế độ {@code SampleTime} in ra các phân vị p50/p99/p99.9 cho mỗi frame, {@code Throughput}
+ * in số frame mỗi giây.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(InboundExecutorBenchmark.SESSIONS)
+@State(Scope.Benchmark)
+public class InboundExecutorBenchmark {
+
+    static final int SESSIONS = 64;
+
+    private static final String DONE_HEADER = "done";
+    private static final byte[] FRAME = "{\"receiver\":\"2\",\"content\":\"xin chào\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"platform", "platform-sized", "virtual"})
+    public String executor;
+
+    @Param({"1", "5"})
+    public int blockingMillis;
+
+    private ThreadPoolTaskExecutor pool;
+    private ExecutorSubscribableChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (executor.equals("virtual")) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("ws-inbound-");
+            virtual.setVirtualThreads(true);
+            channel = new ExecutorSubscribableChannel(virtual);
+        } else {
+            // "platform" giống ChannelRegistration.taskExecutor() khi không cấu hình gì
+            pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(executor.equals("platform-sized")
+                ? SESSIONS : Runtime.getRuntime().availableProcessors() * 2);
+            pool.setThreadNamePrefix("ws-inbound-");
+            pool.setAllowCoreThreadTimeOut(true);
+            pool.initialize();
+            channel = new ExecutorSubscribableChannel(pool);
+        }
+        channel.subscribe(message -> {
+            try {
+                Thread.sleep(blockingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ((CompletableFuture<?>) message.getHeaders().get(DONE_HEADER)).complete(null);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Object sendAndAwait() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Message<byte[]> message = MessageBuilder.withPayload(FRAME).setHeader(DONE_HEADER, done).build();
+        channel.send(message);
+        return done.join();
+    }
+}
@@ -0,0 +1,84 @@
+package com.chat.messmini.benchmark;
+
+import com.chat.messmini.config.PresenceProperties;
+import com.chat.messmini.service.LocalPresenceStore;
+import com.chat.messmini.service.PresenceRegistry;
+import com.chat.messmini.util.ImmutableLongSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sổ sách presence trên một node: connect/disconnect trong {@link PresenceRegistry}, hỏi bạn bè
+ * nào đang online trong {@link LocalPresenceStore}, và snapshot số session cho heartbeat.
+ * {@code users} user đã kết nối sẵn, một nửa số đó online trong store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresenceBenchmark {
+
+    private static final String NODE_ID = "jmh-node";
+
+    @Param({"10000", "100000"})
+    public int users;
+
+    @Param({"200"})
+    public int friends;
+
+    private PresenceRegistry registry;
+    private LocalPresenceStore store;
+    private ImmutableLongSet friendIds;
+    private long nextUserId;
+
+    @Setup
+    public void setup() {
+        registry = new PresenceRegistry(event -> { });
+        store = new LocalPresenceStore(new PresenceProperties());
+        for (long id = 1; id <= users; id++) {
+            registry.sessionConnected("session-" + id, id, "user" + id);
+            if (id % 2 == 0) {
+                store.sessionsChanged(NODE_ID, id, 1);
+            }
+        }
+        long[] ids = new long[friends];
+        for (int i = 0; i < friends; i++) {
+            ids[i] = 1 + (long) i * (users / friends);
+        }
+        friendIds = ImmutableLongSet.of(ids);
+        nextUserId = users + 1;
+    }
+
+    /** Một user mới kết nối rồi ngắt: hai transition, hai event. */
+    @Benchmark
+    public Long connectDisconnect() {
+        long userId = nextUserId++;
+        String sessionId = "bench-" + userId;
+        registry.sessionConnected(sessionId, userId, "bench");
+        return registry.sessionDisconnected(sessionId);
+    }
+
+    @Benchmark
+    public ImmutableLongSet onlineFriends() {
+        return store.onlineAmong(friendIds);
+    }
+
+    @Benchmark
+    public Map<Long, Integer> heartbeatSnapshot() {
+        return registry.sessionCounts();
+    }
+}
@@ -0,0 +1,93 @@
+package com.chat.messmini.benchmark;
+
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.dto.PrivateMessagePayload;
+import com.chat.messmini.service.StompPayloadEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí giao một tin nhắn riêng tới hai user destination (người nhận và echo cho người gửi),
+ * đo qua {@link SimpMessagingTemplate} thật với một channel không làm gì.
+ * <p>
+ * {@code convertPerRecipient} là cách cũ: một {@code Map} và hai lần convert JSON.
+ * {@code encodeOnce} là cách mới: một {@link PrivateMessagePayload} encode một lần, hai lần
+ * {@code send} chỉ copy header. Chạy với {@code -prof gc} (mặc định của profile jmh) để xem
+ * {@code gc.alloc.rate.norm}, số byte cấp phát cho mỗi tin nhắn được giao.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrivateMessageDeliveryBenchmark {
+
+    private SimpMessagingTemplate template;
+    private StompPayloadEncoder encoder;
+    private PersistedMessage message;
+    private Blackhole sink;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        sink = blackhole;
+        MessageChannel channel = (sent, timeout) -> {
+            sink.consume(sent);
+            return true;
+        };
+        template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(new MappingJackson2MessageConverter(objectMapper));
+        encoder = new StompPayloadEncoder(objectMapper);
+        message = new PersistedMessage(
+            123_456L, 17L, "alice", 42L, "bob",
+            "c2VjcmV0IG1lc3NhZ2UgZW5jcnlwdGVkIHdpdGggUlNBLU9BRVAgZm9yIHRoZSByZWNlaXZlcg==",
+            LocalDateTime.now(), false, true);
+    }
+
+    @Benchmark
+    public void convertPerRecipient() {
+        Map<String, Object> payload = Map.of(
+            "id", message.getId(),
+            "senderId", message.getSenderId(),
+            "receiverId", message.getReceiverId(),
+            "content", message.getContent(),
+            "timestamp", message.getTimestamp().toString(),
+            "read", message.isRead(),
+            "encrypted", message.isEncrypted()
+        );
+        template.convertAndSendToUser(message.getReceiverUsername(), "/queue/messages", payload);
+        template.convertAndSendToUser(message.getSenderUsername(), "/queue/messages", payload);
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        Message<byte[]> frame = encoder.encode(PrivateMessagePayload.of(message, "3f1c2a9e-5b7d-4c1e-9a2f-0d8e6b4a1c3f"));
+        template.send(template.getUserDestinationPrefix() + message.getReceiverUsername() + "/queue/messages", frame);
+        template.send(template.getUserDestinationPrefix() + message.getSenderUsername() + "/queue/messages", frame);
+    }
+}
@@ -0,0 +1,114 @@
+package com.chat.messmini.benchmark;
+
+import com.chat.messmini.dto.RoomMessagePayload;
+import com.chat.messmini.dto.RoomMessageView;
+import com.chat.messmini.entity.ChatRoom;
+import com.chat.messmini.entity.RoomMessage;
+import com.chat.messmini.entity.User;
+import com.chat.messmini.service.StompPayloadEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí serialize một tin nhắn phòng trước và sau khi đổi sang payload gọn.
+ * <p>
+ * {@code entity} là cách cũ: Jackson đi qua {@code RoomMessage} → {@code ChatRoom} → mọi thành
+ * viên. {@code leanPayload} và {@code encodeOnce} là cách mới: chỉ {@link RoomMessagePayload},
+ * serialize một lần cho cả phòng. Kích thước payload của mỗi cách được in ra lúc setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomPayloadBenchmark {
+
+    @Param({"10", "200", "2000"})
+    public int members;
+
+    private ObjectMapper objectMapper;
+    private StompPayloadEncoder encoder;
+    private RoomMessage entity;
+    private RoomMessagePayload payload;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        encoder = new StompPayloadEncoder(objectMapper);
+
+        ChatRoom room = new ChatRoom();
+        room.setId(1L);
+        room.setName("benchmark");
+        room.setDescription("Phòng dùng cho benchmark");
+        room.setCreatedAt(LocalDateTime.now());
+        room.setUpdatedAt(LocalDateTime.now());
+        for (long id = 1; id <= members; id++) {
+            room.getMembers().add(user(id));
+        }
+        User sender = room.getMembers().iterator().next();
+        room.setCreator(sender);
+
+        entity = new RoomMessage();
+        entity.setId(42L);
+        entity.setRoom(room);
+        entity.setSender(sender);
+        entity.setContent("Xin chào cả phòng, tối nay 8h họp nhé!");
+        entity.setTimestamp(LocalDateTime.now());
+
+        payload = RoomMessagePayload.of(room.getId(), new RoomMessageView(
+            entity.getId(), sender.getId(), sender.getDisplayName(), entity.getContent(), entity.getTimestamp()));
+
+        System.out.printf("%nmembers=%d: entity payload %d bytes, lean payload %d bytes%n",
+            members, objectMapper.writeValueAsBytes(entity).length, objectMapper.writeValueAsBytes(payload).length);
+    }
+
+    @Benchmark
+    public byte[] entity() throws Exception {
+        return objectMapper.writeValueAsBytes(entity);
+    }
+
+    @Benchmark
+    public byte[] leanPayload() throws Exception {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public Message<byte[]> encodeOnce() {
+        return encoder.encode(payload);
+    }
+
+    private static User user(long id) {
+        return User.builder()
+            .id(id)
+            .username("user" + id)
+            .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z3ZJz7C0Yq0cF1Jc4s2Z5y9e")
+            .displayName("Người dùng " + id)
+            .email("user" + id + "@example.com")
+            .avatarUrl("/images/default-avatar.png")
+            .roles(Set.of("ROLE_USER"))
+            .publicKey("MIIBIjANBgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEA" + "x".repeat(340) + "IDAQAB")
+            .build();
+    }
+}
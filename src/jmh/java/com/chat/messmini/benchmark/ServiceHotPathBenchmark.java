@@ -0,0 +1,153 @@
+package com.chat.messmini.benchmark;
+
+import com.chat.messmini.MessminiApplication;
+import com.chat.messmini.dto.ChatMessageView;
+import com.chat.messmini.dto.CursorPage;
+import com.chat.messmini.dto.UserSummary;
+import com.chat.messmini.entity.Message;
+import com.chat.messmini.entity.User;
+import com.chat.messmini.model.ChatMessage;
+import com.chat.messmini.repository.UserRepository;
+import com.chat.messmini.service.ChatService;
+import com.chat.messmini.service.FriendshipService;
+import com.chat.messmini.service.PresenceRegistry;
+import com.chat.messmini.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Các đường nóng của service trên một context Spring thật dựng bằng profile {@code embedded}
+ * (H2 chế độ MySQL), không cần MySQL hay mạng:
+ * <ul>
+ *   <li>{@code persistMessage}: {@code ChatService.saveMessage}, một transaction mỗi tin;</li>
+ *   <li>{@code persistWriteBehind}: {@value #WRITE_BEHIND_BATCH} tin qua writer theo lô, tính
+ *       trên mỗi tin;</li>
+ *   <li>{@code chatHistory}: một trang lịch sử {@value #PAGE_SIZE} tin, gồm truy vấn và map sang DTO;</li>
+ *   <li>{@code friendList}: danh sách bạn bè kèm trạng thái online của {@value #FRIENDS} bạn.</li>
+ * </ul>
+ * Context được dựng một lần mỗi fork. Chạy riêng bằng {@code -Djmh.args=ServiceHotPath}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceHotPathBenchmark {
+
+    private static final int FRIENDS = 200;
+    private static final int HISTORY = 2_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WRITE_BEHIND_BATCH = 100;
+    private static final String PASSWORD = "secret123";
+
+    private ConfigurableApplicationContext context;
+    private Path dataDir;
+    private ChatService chatService;
+    private FriendshipService friendshipService;
+    private Long aliceId;
+    private Long bobId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dataDir = Files.createTempDirectory("messmini-jmh");
+        // Profile embedded lo H2, broker và presence trong tiến trình; chỉ ghi đè cổng và thư mục index
+        context = new SpringApplicationBuilder(MessminiApplication.class)
+            .profiles("embedded")
+            .logStartupInfo(false)
+            .run(
+                "--server.port=0",
+                "--management.server.port=0",
+                "--logging.level.root=WARN",
+                "--messmini.search.index-dir=" + dataDir.resolve("search")
+            );
+        chatService = context.getBean(ChatService.class);
+        friendshipService = context.getBean(FriendshipService.class);
+        UserService userService = context.getBean(UserService.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        PresenceRegistry presenceRegistry = context.getBean(PresenceRegistry.class);
+
+        userService.register("alice", PASSWORD, "Alice");
+        userService.register("bob", PASSWORD, "Bob");
+        User alice = userRepository.findByUsername("alice").orElseThrow();
+        aliceId = alice.getId();
+        bobId = userRepository.findByUsername("bob").orElseThrow().getId();
+
+        for (int i = 0; i < FRIENDS; i++) {
+            String username = "friend" + i;
+            userService.register(username, PASSWORD, "Bạn " + i);
+            User friend = userRepository.findByUsername(username).orElseThrow();
+            friendshipService.sendFriendRequest(alice, friend);
+            Long requestId = friendshipService.getPendingRequestsByReceiverId(friend.getId()).get(0).getId();
+            friendshipService.acceptFriendRequest(requestId, friend.getId());
+            // Một nửa số bạn đang online
+            if (i % 2 == 0) {
+                presenceRegistry.sessionConnected("jmh-" + i, friend.getId(), username);
+            }
+        }
+        for (int i = 0; i < HISTORY; i++) {
+            chatService.saveMessage(message(i % 2 == 0 ? aliceId : bobId, i % 2 == 0 ? bobId : aliceId));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        try (var files = Files.walk(dataDir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Message persistMessage() {
+        return chatService.saveMessage(message(aliceId, bobId));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITE_BEHIND_BATCH)
+    public Object persistWriteBehind() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[WRITE_BEHIND_BATCH];
+        for (int i = 0; i < WRITE_BEHIND_BATCH; i++) {
+            futures[i] = chatService.saveMessageAsync(message(aliceId, bobId));
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public CursorPage<ChatMessageView> chatHistory() {
+        return chatService.getChatHistory(aliceId, bobId, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<UserSummary> friendList() {
+        return friendshipService.getFriendSummaries(aliceId);
+    }
+
+    private static ChatMessage message(Long senderId, Long receiverId) {
+        ChatMessage message = new ChatMessage();
+        message.setSenderId(senderId);
+        message.setReceiverId(receiverId);
+        message.setContent("Tin nhắn benchmark, đủ dài để giống một câu chat bình thường.");
+        message.setEncrypted(false);
+        return message;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Benchmark JMH, chỉ được biên dịch trong profile Maven {@code jmh}.
+ * <p>
+ * Chạy tất cả (kèm profiler GC để thấy allocation, không cần mạng khi dependency đã có sẵn):
+ * <pre>
+ * ./mvnw -o -Pjmh test-compile exec:exec
+ * </pre>
+ * Chọn benchmark bằng {@code -Djmh.args=RoomPayload} (regex tên benchmark của JMH), đổi profiler
+ * bằng {@code -Djmh.profiler=stack}.
+ * <ul>
+ *   <li>{@code ServiceHotPathBenchmark}: lưu tin nhắn, lịch sử chat, danh sách bạn bè trên H2 nhúng;</li>
+ *   <li>{@code PresenceBenchmark}: connect/disconnect, bạn bè online, snapshot heartbeat;</li>
+ *   <li>{@code RoomPayloadBenchmark}, {@code PrivateMessageDeliveryBenchmark}: serialize payload STOMP;</li>
+ *   <li>{@code InboundExecutorBenchmark}: pool thread nền tảng so với virtual thread cho inbound channel.</li>
+ * </ul>
+ */
+package com.chat.messmini.benchmark;
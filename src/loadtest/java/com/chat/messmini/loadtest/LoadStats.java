@@ -0,0 +1,146 @@
+package com.chat.messmini.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm và histogram độ trễ dùng chung cho mọi client. Thread nhận frame ghi vào {@link Recorder}
+ * (không khóa); thread báo cáo lấy histogram theo từng khoảng và cộng dồn vào kết quả cuối sau
+ * khi hết warmup.
+ */
+final class LoadStats {
+
+    enum Path {
+        PRIVATE(true), ROOM(true),
+        // Frame typing không mang thời điểm gửi và bị server gộp/giãn nên chỉ đếm throughput
+        TYPING(false);
+
+        final boolean timed;
+
+        Path(boolean timed) {
+            this.timed = timed;
+        }
+    }
+
+    private final Map<Path, Recorder> latency = new EnumMap<>(Path.class);
+    private final Map<Path, Histogram> intervalHistograms = new EnumMap<>(Path.class);
+    private final Map<Path, Histogram> totals = new EnumMap<>(Path.class);
+    private final Map<Path, LongAdder> sent = new EnumMap<>(Path.class);
+    private final Map<Path, LongAdder> received = new EnumMap<>(Path.class);
+    private final Map<Path, Long> totalSent = new EnumMap<>(Path.class);
+    private final Map<Path, Long> totalReceived = new EnumMap<>(Path.class);
+
+    final LongAdder rateLimited = new LongAdder();
+    final LongAdder sendErrors = new LongAdder();
+    final LongAdder transportErrors = new LongAdder();
+
+    private long measuredNanos;
+
+    LoadStats() {
+        for (Path path : Path.values()) {
+            // 3 chữ số có nghĩa, tự mở rộng dải giá trị; đơn vị micro giây
+            latency.put(path, new Recorder(3));
+            totals.put(path, new Histogram(3));
+            sent.put(path, new LongAdder());
+            received.put(path, new LongAdder());
+            totalSent.put(path, 0L);
+            totalReceived.put(path, 0L);
+        }
+    }
+
+    void sent(Path path) {
+        sent.get(path).increment();
+    }
+
+    void received(Path path) {
+        received.get(path).increment();
+    }
+
+    /**
+     * Độ trễ từ thời điểm <em>dự kiến</em> gửi đến lúc client nhận frame. Dùng thời điểm dự kiến
+     * thay cho thời điểm gửi thật để thread gửi bị chậm không che mất độ trễ (coordinated omission).
+     */
+    void delivered(Path path, long intendedSendNanos) {
+        received.get(path).increment();
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedSendNanos);
+        latency.get(path).recordValue(Math.max(0, micros));
+    }
+
+    /**
+     * Đóng khoảng đo hiện tại, in một dòng tóm tắt và cộng dồn vào kết quả cuối nếu {@code measure}.
+     */
+    void interval(PrintStream out, String label, long intervalNanos, boolean measure) {
+        interval(out, label, intervalNanos, measure, measure);
+    }
+
+    /**
+     * Khoảng chờ sau khi ngừng gửi: frame giao muộn vẫn được tính, nhưng thời gian chờ không
+     * được cộng vào thời gian đo để không làm giảm throughput.
+     */
+    void drain(PrintStream out, long intervalNanos) {
+        interval(out, "drain", intervalNanos, true, false);
+    }
+
+    private void interval(PrintStream out, String label, long intervalNanos, boolean measure, boolean countTime) {
+        double seconds = intervalNanos / 1e9;
+        StringBuilder line = new StringBuilder(String.format("[%8s]", label));
+        for (Path path : Path.values()) {
+            Histogram histogram = latency.get(path).getIntervalHistogram(intervalHistograms.get(path));
+            intervalHistograms.put(path, histogram);
+            long sentCount = sent.get(path).sumThenReset();
+            long receivedCount = received.get(path).sumThenReset();
+            line.append(String.format(" | %s %6.0f/s sent %7.0f/s recv", path.name().toLowerCase(),
+                sentCount / seconds, receivedCount / seconds));
+            if (path.timed) {
+                line.append(String.format(" p50 %.2f p99 %.2f ms",
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99))));
+            }
+            if (measure) {
+                totals.get(path).add(histogram);
+                totalSent.merge(path, sentCount, Long::sum);
+                totalReceived.merge(path, receivedCount, Long::sum);
+            }
+        }
+        if (countTime) {
+            measuredNanos += intervalNanos;
+        }
+        out.println(line);
+    }
+
+    void report(PrintStream out, LoadTestOptions options, int clients, int rooms) {
+        double seconds = measuredNanos / 1e9;
+        out.println();
+        out.printf("=== messmini STOMP load test: %d clients connected, %d rooms, %.0fs measured ===%n",
+            clients, rooms, seconds);
+        out.println(options);
+        out.printf("%-8s %10s %12s %9s %9s %9s %9s %9s%n",
+            "path", "sent/s", "delivered/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Path path : Path.values()) {
+            Histogram histogram = totals.get(path);
+            out.printf("%-8s %10.1f %12.1f", path.name().toLowerCase(),
+                totalSent.get(path) / seconds, totalReceived.get(path) / seconds);
+            if (!path.timed) {
+                out.printf(" %9s %9s %9s %9s %9s%n", "-", "-", "-", "-", "-");
+                continue;
+            }
+            out.printf(" %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+        }
+        out.printf("rate-limited: %d, send errors: %d, transport errors: %d%n",
+            rateLimited.sum(), sendErrors.sum(), transportErrors.sum());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.chat.messmini.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tham số dòng lệnh dạng {@code --key=value}. Một tham số có thể chứa nhiều cặp cách nhau bởi
+ * khoảng trắng, vì {@code -Dloadtest.args="..."} của Maven được truyền thành một tham số duy nhất.
+ */
+final class LoadTestOptions {
+
+    private static final Set<String> KEYS = Set.of(
+        "url", "embedded", "clients", "room-size", "rate", "room-ratio", "typing",
+        "warmup", "duration", "report-interval", "setup-concurrency", "sender-threads", "prefix");
+
+    /** Gốc HTTP của server; bị bỏ qua khi {@link #embedded}. */
+    final String url;
+    /** Khởi động ứng dụng ngay trong JVM này với profile Spring {@code embedded}. */
+    final boolean embedded;
+    final int clients;
+    /** Số thành viên mỗi phòng; nhỏ hơn 2 thì không tạo phòng. */
+    final int roomSize;
+    /** Tin nhắn mỗi giây của một client. */
+    final double rate;
+    /** Tỉ lệ tin nhắn gửi vào phòng, phần còn lại là tin nhắn riêng cho bạn bè. */
+    final double roomRatio;
+    /** Gửi typing bật/tắt quanh mỗi tin nhắn riêng. */
+    final boolean typing;
+    final Duration warmup;
+    final Duration duration;
+    final Duration reportInterval;
+    final int setupConcurrency;
+    final int senderThreads;
+    /** Tiền tố username, mặc định khác nhau mỗi lần chạy để chạy lại trên cùng một DB. */
+    final String prefix;
+
+    private LoadTestOptions(Map<String, String> values) {
+        this.url = stripTrailingSlash(values.getOrDefault("url", "http://127.0.0.1:8080"));
+        this.embedded = Boolean.parseBoolean(values.getOrDefault("embedded", "false"));
+        this.clients = Integer.parseInt(values.getOrDefault("clients", "1000"));
+        this.roomSize = Integer.parseInt(values.getOrDefault("room-size", "10"));
+        this.rate = Double.parseDouble(values.getOrDefault("rate", "0.5"));
+        this.roomRatio = Double.parseDouble(values.getOrDefault("room-ratio", "0.2"));
+        this.typing = Boolean.parseBoolean(values.getOrDefault("typing", "true"));
+        this.warmup = DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s"));
+        this.duration = DurationStyle.detectAndParse(values.getOrDefault("duration", "60s"));
+        this.reportInterval = DurationStyle.detectAndParse(values.getOrDefault("report-interval", "5s"));
+        this.setupConcurrency = Integer.parseInt(values.getOrDefault("setup-concurrency", "64"));
+        this.senderThreads = Integer.parseInt(values.getOrDefault("sender-threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.prefix = values.getOrDefault("prefix", "lt" + Long.toString(System.currentTimeMillis(), 36));
+
+        if (clients < 2) {
+            throw new IllegalArgumentException("--clients must be at least 2");
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        if (roomRatio < 0 || roomRatio > 1) {
+            throw new IllegalArgumentException("--room-ratio must be between 0 and 1");
+        }
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        Arrays.stream(args)
+            .flatMap(arg -> Arrays.stream(arg.trim().split("\\s+")))
+            .filter(token -> !token.isEmpty())
+            .forEach(token -> {
+                if (!token.startsWith("--")) {
+                    throw new IllegalArgumentException("Expected --key=value but got: " + token);
+                }
+                int eq = token.indexOf('=');
+                String key = eq < 0 ? token.substring(2) : token.substring(2, eq);
+                // --embedded tương đương --embedded=true
+                String value = eq < 0 ? "true" : token.substring(eq + 1);
+                if (!KEYS.contains(key)) {
+                    throw new IllegalArgumentException("Unknown option --" + key + ", expected one of " + KEYS);
+                }
+                values.put(key, value);
+            });
+        return new LoadTestOptions(values);
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("clients=%d room-size=%d rate=%.2f/s room-ratio=%.2f typing=%s warmup=%ds duration=%ds",
+            clients, roomSize, rate, roomRatio, typing, warmup.toSeconds(), duration.toSeconds());
+    }
+}
@@ -0,0 +1,333 @@
+package com.chat.messmini.loadtest;
+
+import com.chat.messmini.loadtest.LoadStats.Path;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Một người dùng giả lập: đăng ký và đăng nhập qua {@code /api/auth}, kết bạn, rồi giữ một STOMP
+ * session trên {@code /ws} để gửi tin nhắn riêng, tin nhắn phòng và typing.
+ * <p>
+ * Nội dung tin nhắn mang thời điểm dự kiến gửi ({@link System#nanoTime()}); người nhận cùng JVM
+ * tính ra độ trễ đầu-cuối, gồm cả lưu DB và fan-out của server.
+ */
+final class SimulatedClient {
+
+    static final String PASSWORD = "loadtest123";
+    private static final String LATENCY_PREFIX = "lt:";
+
+    final int index;
+    final String username;
+    private final String baseUrl;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper;
+    private final LoadStats stats;
+
+    private String sessionCookie;
+    private Long userId;
+    private SimulatedClient friend;
+    private Long roomId;
+    private StompSession session;
+
+    /** Thời điểm dự kiến của lần gửi kế tiếp; chỉ thread gửi của client này đọc/ghi. */
+    private long nextSendNanos;
+    private long periodNanos;
+    private long sequence;
+
+    SimulatedClient(int index, String username, String baseUrl, HttpClient http,
+                    ObjectMapper objectMapper, LoadStats stats) {
+        this.index = index;
+        this.username = username;
+        this.baseUrl = baseUrl;
+        this.http = http;
+        this.objectMapper = objectMapper;
+        this.stats = stats;
+    }
+
+    Long userId() {
+        return userId;
+    }
+
+    void friend(SimulatedClient friend) {
+        this.friend = friend;
+    }
+
+    SimulatedClient friend() {
+        return friend;
+    }
+
+    void roomId(Long roomId) {
+        this.roomId = roomId;
+    }
+
+    Long roomId() {
+        return roomId;
+    }
+
+    // ---------------------------------------------------------------- REST
+
+    /**
+     * Đăng ký (bỏ qua nếu username đã tồn tại), đăng nhập và lấy id của chính mình.
+     */
+    void signIn() throws IOException, InterruptedException {
+        HttpResponse<String> registered = post("/api/auth/register", Map.of(
+            "username", username, "password", PASSWORD, "displayName", "Load " + index));
+        if (registered.statusCode() != 200 && registered.statusCode() != 400) {
+            throw new IllegalStateException("register " + username + " failed: " + describe(registered));
+        }
+
+        HttpResponse<String> login = post("/api/auth/login", Map.of("username", username, "password", PASSWORD));
+        if (login.statusCode() != 200) {
+            throw new IllegalStateException("login " + username + " failed: " + describe(login));
+        }
+        sessionCookie = login.headers().allValues("Set-Cookie").stream()
+            .flatMap(header -> HttpCookie.parse(header).stream())
+            .filter(cookie -> cookie.getName().equals("JSESSIONID"))
+            .map(cookie -> "JSESSIONID=" + cookie.getValue())
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("login " + username + " returned no session cookie"));
+
+        userId = json(get("/api/users/current")).get("id").asLong();
+    }
+
+    void requestFriendship(SimulatedClient other) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/api/friendships/request/" + encode(other.username), null);
+        // 400 khi đã là bạn hoặc đã có lời mời: chấp nhận được khi chạy lại với cùng prefix
+        if (response.statusCode() != 200 && response.statusCode() != 400) {
+            throw new IllegalStateException("friend request " + username + " -> " + other.username
+                + " failed: " + describe(response));
+        }
+    }
+
+    void acceptFriendship(SimulatedClient other) throws IOException, InterruptedException {
+        for (JsonNode request : json(get("/api/friends/requests"))) {
+            if (other.username.equals(request.path("sender").path("username").asText())) {
+                HttpResponse<String> response = post("/api/friendships/accept/" + request.get("id").asLong(), null);
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("accept " + other.username + " by " + username
+                        + " failed: " + describe(response));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tạo phòng với chính mình là người tạo và {@code members} là thành viên, trả về id phòng.
+     */
+    Long createRoom(List<SimulatedClient> members) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/api/rooms", Map.of(
+            "name", username + "-room",
+            "description", "load test",
+            "memberIds", members.stream().map(SimulatedClient::userId).toList()));
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("create room by " + username + " failed: " + describe(response));
+        }
+        return objectMapper.readTree(response.body()).get("id").asLong();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return http.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, Object body) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher publisher = body == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        return http.send(request(path).header("Content-Type", "application/json").POST(publisher).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        if (sessionCookie != null) {
+            builder.header("Cookie", sessionCookie);
+        }
+        return builder;
+    }
+
+    private JsonNode json(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(username + ": " + response.request().uri() + " " + describe(response));
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String describe(HttpResponse<String> response) {
+        String body = response.body();
+        return response.statusCode() + (body == null || body.isEmpty() ? "" : " " + body.strip());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- STOMP
+
+    /**
+     * Mở STOMP session bằng cookie đăng nhập, subscribe các đích rồi chờ snapshot của
+     * {@code /app/presence}. Broker đơn giản không trả RECEIPT cho SUBSCRIBE, nhưng frame của một
+     * session được xử lý theo thứ tự ({@code preserveReceiveOrder}), nên khi snapshot về thì các
+     * subscription trước đó đã được đăng ký và traffic có thể bắt đầu.
+     */
+    void connect(WebSocketStompClient stompClient, String wsUrl, long timeoutMillis) throws Exception {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", sessionCookie);
+        session = stompClient.connectAsync(wsUrl, headers, new StompSessionHandlerAdapter() {
+                @Override
+                public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                            byte[] payload, Throwable exception) {
+                    stats.transportErrors.increment();
+                }
+
+                @Override
+                public void handleTransportError(StompSession session, Throwable exception) {
+                    stats.transportErrors.increment();
+                }
+            })
+            .get(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        subscribe("/user/queue/messages", this::onPrivateMessage);
+        subscribe("/user/queue/typing", payload -> stats.received(Path.TYPING));
+        subscribe("/user/queue/errors", this::onError);
+        if (roomId != null) {
+            subscribe("/topic/room." + roomId, this::onRoomMessage);
+        }
+        CountDownLatch subscribed = new CountDownLatch(1);
+        subscribe("/app/presence", payload -> subscribed.countDown());
+        if (!subscribed.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(username + ": no presence snapshot after subscribing");
+        }
+    }
+
+    private void subscribe(String destination, Consumer<Map<String, Object>> handler) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                handler.accept((Map<String, Object>) payload);
+            }
+        });
+    }
+
+    private void onPrivateMessage(Map<String, Object> payload) {
+        // Bản echo cho chính người gửi không tính là một lần giao
+        if (!isOwn(payload)) {
+            recordDelivery(Path.PRIVATE, payload);
+        }
+    }
+
+    private void onRoomMessage(Map<String, Object> payload) {
+        if (!isOwn(payload)) {
+            recordDelivery(Path.ROOM, payload);
+        }
+    }
+
+    private void onError(Map<String, Object> payload) {
+        if ("RATE_LIMITED".equals(payload.get("error"))) {
+            stats.rateLimited.increment();
+        }
+    }
+
+    private boolean isOwn(Map<String, Object> payload) {
+        return payload.get("senderId") instanceof Number sender && sender.longValue() == userId;
+    }
+
+    private void recordDelivery(Path path, Map<String, Object> payload) {
+        if (payload.get("content") instanceof String content && content.startsWith(LATENCY_PREFIX)) {
+            stats.delivered(path, Long.parseLong(content.substring(LATENCY_PREFIX.length())));
+        }
+    }
+
+    // ---------------------------------------------------------------- traffic
+
+    /**
+     * Bắt đầu lịch gửi đều {@code ratePerSecond}, lệch pha ngẫu nhiên để các client không gửi cùng lúc.
+     * Trả về độ trễ tới lần gửi đầu tiên.
+     */
+    long schedule(double ratePerSecond) {
+        periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long offset = ThreadLocalRandom.current().nextLong(periodNanos);
+        nextSendNanos = System.nanoTime() + offset;
+        return offset;
+    }
+
+    long periodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Gửi một tin nhắn: vào phòng với xác suất {@code roomRatio}, còn lại là tin nhắn riêng cho bạn,
+     * kèm typing bật trước và tắt sau nếu {@code typing}. Không bao giờ chạy song song cho cùng một client.
+     */
+    void tick(double roomRatio, boolean typing) {
+        long intended = nextSendNanos;
+        nextSendNanos += periodNanos;
+        String content = LATENCY_PREFIX + intended;
+        try {
+            boolean toRoom = roomId != null && (friend == null || ThreadLocalRandom.current().nextDouble() < roomRatio);
+            if (toRoom) {
+                session.send("/app/chat.room", Map.of("roomId", roomId, "content", content));
+                stats.sent(Path.ROOM);
+            } else if (friend != null) {
+                if (typing) {
+                    sendTyping(true);
+                }
+                session.send("/app/chat.private", Map.of(
+                    "sender", userId.toString(),
+                    "receiver", friend.userId.toString(),
+                    "content", content,
+                    "clientMessageId", username + "-" + (++sequence)));
+                stats.sent(Path.PRIVATE);
+                if (typing) {
+                    sendTyping(false);
+                }
+            }
+        } catch (RuntimeException e) {
+            stats.sendErrors.increment();
+        }
+    }
+
+    private void sendTyping(boolean typing) {
+        session.send("/app/chat.typing", Map.of("receiver", friend.username, "typing", typing));
+        stats.sent(Path.TYPING);
+    }
+
+    void disconnect() {
+        if (session != null && session.isConnected()) {
+            try {
+                session.disconnect();
+            } catch (RuntimeException ignored) {
+                // Đang tắt, lỗi transport không còn ý nghĩa
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.chat.messmini.loadtest;
+
+import com.chat.messmini.MessminiApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sinh tải STOMP/WebSocket: hàng nghìn client giả lập cùng lúc trên {@code /ws}, báo cáo
+ * throughput và phân vị độ trễ giao tin đầu-cuối (HdrHistogram).
+ * <p>
+ * Các bước: đăng ký + đăng nhập qua {@code /api/auth}, kết bạn theo cặp (client {@code 2k} với
+ * {@code 2k+1}), tạo phòng theo nhóm {@code --room-size} client liền nhau, mở STOMP session, rồi
+ * gửi đều trong {@code --warmup} + {@code --duration}. Chỉ phần sau warmup được tính vào kết quả.
+ * Client nào lỗi ở bước chuẩn bị bị loại và được in ra, không làm dừng cả lần chạy.
+ */
+public final class StompLoadGenerator {
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final Duration DRAIN_GRACE = Duration.ofSeconds(2);
+
+    private final LoadTestOptions options;
+    private final PrintStream out = System.out;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadStats stats = new LoadStats();
+
+    private StompLoadGenerator(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext app = null;
+        String baseUrl = options.url;
+        if (options.embedded) {
+            // Server và client chung JVM: thuận tiện để chạy thử, nhưng hai bên tranh CPU;
+            // để đo nghiêm túc hãy chạy server riêng với profile embedded và dùng --url.
+            // Devtools nằm trên classpath test: restarter sẽ gọi lại main() với tham số của Spring
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            app = new SpringApplicationBuilder(MessminiApplication.class)
+                .profiles("embedded")
+                .run("--server.port=0", "--server.address=127.0.0.1", "--management.server.port=0");
+            baseUrl = "http://127.0.0.1:" + app.getEnvironment().getRequiredProperty("local.server.port");
+        }
+        try {
+            new StompLoadGenerator(options).run(baseUrl);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+        // Thread của WebSocket client không phải daemon
+        System.exit(0);
+    }
+
+    private void run(String baseUrl) throws Exception {
+        out.printf("Load test against %s: %s%n", baseUrl, options);
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+        List<SimulatedClient> clients = new ArrayList<>(options.clients);
+        for (int i = 0; i < options.clients; i++) {
+            clients.add(new SimulatedClient(i, options.prefix + "-" + i, baseUrl, http, objectMapper, stats));
+        }
+
+        clients = runPhase("sign in", clients, SimulatedClient::signIn);
+        pairFriends(clients);
+        int rooms = createRooms(clients);
+
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(2);
+        heartbeatScheduler.setThreadNamePrefix("stomp-heartbeat-");
+        heartbeatScheduler.setDaemon(true);
+        heartbeatScheduler.initialize();
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+            new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setTaskScheduler(heartbeatScheduler);
+
+        String wsUrl = baseUrl + "/ws";
+        clients = runPhase("connect", clients, client -> client.connect(stompClient, wsUrl, CONNECT_TIMEOUT_MILLIS));
+
+        try {
+            generateTraffic(clients);
+            stats.report(out, options, clients.size(), rooms);
+        } finally {
+            clients.forEach(SimulatedClient::disconnect);
+            heartbeatScheduler.shutdown();
+        }
+    }
+
+    /**
+     * Kết bạn theo cặp liền nhau: client chẵn gửi lời mời, client lẻ chấp nhận. Nếu một bên đã bị
+     * loại ở bước trước, bên còn lại chỉ gửi tin nhắn phòng.
+     */
+    private void pairFriends(List<SimulatedClient> clients) throws InterruptedException {
+        Map<Integer, SimulatedClient> byIndex = new HashMap<>();
+        clients.forEach(client -> byIndex.put(client.index, client));
+        List<SimulatedClient> paired = new ArrayList<>();
+        for (SimulatedClient client : clients) {
+            SimulatedClient accepter = client.index % 2 == 0 ? byIndex.get(client.index + 1) : null;
+            if (accepter != null) {
+                client.friend(accepter);
+                accepter.friend(client);
+                paired.add(client);
+            }
+        }
+        List<SimulatedClient> requested = runPhase("friend request", paired,
+            requester -> requester.requestFriendship(requester.friend()));
+        runPhase("friend accept", requested.stream().map(SimulatedClient::friend).toList(),
+            accepter -> accepter.acceptFriendship(accepter.friend()));
+    }
+
+    private int createRooms(List<SimulatedClient> clients) throws InterruptedException {
+        if (options.roomSize < 2) {
+            return 0;
+        }
+        List<List<SimulatedClient>> groups = new ArrayList<>();
+        for (int from = 0; from + 1 < clients.size(); from += options.roomSize) {
+            groups.add(clients.subList(from, Math.min(from + options.roomSize, clients.size())));
+        }
+        List<List<SimulatedClient>> created = runPhase("create rooms", groups, group -> {
+            Long roomId = group.get(0).createRoom(group.subList(1, group.size()));
+            group.forEach(member -> member.roomId(roomId));
+        });
+        return created.size();
+    }
+
+    private void generateTraffic(List<SimulatedClient> clients) throws InterruptedException {
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(options.senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "load-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<ScheduledFuture<?>> schedules = new ArrayList<>(clients.size());
+        for (SimulatedClient client : clients) {
+            long initialDelay = client.schedule(options.rate);
+            // Lịch cố định không bao giờ chạy chồng hai lần tick của cùng một client
+            schedules.add(senders.scheduleAtFixedRate(() -> client.tick(options.roomRatio, options.typing),
+                initialDelay, client.periodNanos(), TimeUnit.NANOSECONDS));
+        }
+
+        long start = System.nanoTime();
+        long warmupEnd = start + options.warmup.toNanos();
+        long end = warmupEnd + options.duration.toNanos();
+        long intervalNanos = options.reportInterval.toNanos();
+        long last = start;
+        // Lấy mốc đo ngay tại ranh giới warmup để kết quả không lẫn số liệu warmup
+        while (last < end) {
+            long now = System.nanoTime();
+            long next = last < warmupEnd ? Math.min(last + intervalNanos, warmupEnd) : Math.min(last + intervalNanos, end);
+            TimeUnit.NANOSECONDS.sleep(next - now);
+            boolean measuring = last >= warmupEnd;
+            stats.interval(out, label(next - start, measuring), next - last, measuring);
+            last = next;
+        }
+
+        schedules.forEach(schedule -> schedule.cancel(false));
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+        // Tin gửi ở những giây cuối vẫn đang trên đường: chờ thêm rồi gộp độ trễ của chúng vào kết quả
+        Thread.sleep(DRAIN_GRACE.toMillis());
+        stats.drain(out, DRAIN_GRACE.toNanos());
+    }
+
+    private static String label(long elapsedNanos, boolean measuring) {
+        return (measuring ? "" : "warm ") + TimeUnit.NANOSECONDS.toSeconds(elapsedNanos) + "s";
+    }
+
+    /**
+     * Chạy {@code step} cho mọi phần tử với tối đa {@code --setup-concurrency} request song song,
+     * in số lỗi và trả về các phần tử thành công (giữ nguyên thứ tự).
+     */
+    private <T> List<T> runPhase(String name, List<T> items, Step<T> step) throws InterruptedException {
+        long start = System.nanoTime();
+        AtomicInteger done = new AtomicInteger();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Future<Boolean>> results = new ArrayList<>(items.size());
+        ExecutorService executor = Executors.newFixedThreadPool(options.setupConcurrency);
+        try {
+            for (T item : items) {
+                results.add(executor.submit(() -> {
+                    try {
+                        step.run(item);
+                        return true;
+                    } catch (Exception e) {
+                        failures.add(e.getMessage());
+                        return false;
+                    } finally {
+                        int completed = done.incrementAndGet();
+                        if (completed % 500 == 0) {
+                            out.printf("  %s: %d/%d%n", name, completed, items.size());
+                        }
+                    }
+                }));
+            }
+            List<T> succeeded = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                if (Boolean.TRUE.equals(getQuietly(results.get(i)))) {
+                    succeeded.add(items.get(i));
+                }
+            }
+            out.printf("%s: %d ok, %d failed in %d ms%n", name, succeeded.size(), items.size() - succeeded.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            failures.stream().limit(5).forEach(failure -> out.println("  " + failure));
+            if (succeeded.isEmpty() && !items.isEmpty()) {
+                throw new IllegalStateException(name + " failed for every client");
+            }
+            return succeeded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Boolean getQuietly(Future<Boolean> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step<T> {
+        void run(T item) throws Exception;
+    }
+}
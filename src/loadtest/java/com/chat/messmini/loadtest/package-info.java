@@ -0,0 +1,23 @@
+/**
+ * Công cụ sinh tải STOMP/WebSocket, chỉ được biên dịch trong profile Maven {@code loadtest}.
+ * <p>
+ * Chạy hoàn toàn trên máy: ứng dụng được khởi động trong cùng JVM với profile Spring
+ * {@code embedded} (H2 trong bộ nhớ, broker đơn giản, presence cục bộ):
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:exec
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="--embedded --clients=3000 --rate=1 --duration=120s"
+ * </pre>
+ * Để client không tranh CPU với server, chạy server riêng rồi trỏ công cụ vào đó:
+ * <pre>
+ * ./mvnw -Pembedded spring-boot:run
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="--url=http://127.0.0.1:8080 --clients=5000"
+ * </pre>
+ * Tham số ({@link LoadTestOptions}): {@code --clients}, {@code --rate} (tin nhắn/giây mỗi client),
+ * {@code --room-size}, {@code --room-ratio}, {@code --typing}, {@code --warmup}, {@code --duration},
+ * {@code --report-interval}, {@code --setup-concurrency}, {@code --sender-threads}, {@code --prefix}.
+ * <p>
+ * Giới hạn tần suất của server ({@code messmini.rate-limit.*}) vẫn áp dụng: với {@code --rate}
+ * vượt giới hạn theo đích, phần dư bị từ chối và được đếm ở dòng {@code rate-limited}. Nhiều nghìn
+ * kết nối cần {@code ulimit -n} đủ lớn ở cả hai phía.
+ */
+package com.chat.messmini.loadtest;
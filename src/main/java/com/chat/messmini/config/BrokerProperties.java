@@ -0,0 +1,45 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.broker")
+public class BrokerProperties {
+
+    public enum Mode {
+        /** Broker trong bộ nhớ của từng JVM: chỉ chạy được một node. */
+        SIMPLE,
+        /** Chuyển tiếp tới một STOMP broker ngoài (ActiveMQ Artemis, RabbitMQ...) để chạy nhiều node. */
+        RELAY
+    }
+
+    private Mode mode = Mode.SIMPLE;
+
+    private final Relay relay = new Relay();
+
+    @Data
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+
+        /** Thông tin đăng nhập cho các kết nối của client WebSocket. */
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+
+        /** Thông tin đăng nhập cho kết nối "system" dùng chung để server gửi message. */
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+
+        private String virtualHost;
+
+        /**
+         * Topic để các node chuyển cho nhau message gửi tới user không kết nối với node hiện tại;
+         * node nào có session của user đó sẽ nhận và giao.
+         */
+        private String userDestinationBroadcast = "/topic/unresolved-user-destination";
+
+        /** Topic để các node chia sẻ định kỳ danh sách user/session đang kết nối với mình. */
+        private String userRegistryBroadcast = "/topic/simp-user-registry";
+    }
+}
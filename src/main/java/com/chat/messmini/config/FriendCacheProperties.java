@@ -0,0 +1,16 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.cache.friends")
+public class FriendCacheProperties {
+    /** Số user tối đa giữ danh sách bạn bè trong cache đồ thị bạn bè. */
+    private long maximumSize = 100_000;
+
+    /** Bỏ danh sách bạn bè của user không được đọc trong khoảng này; được nạp lại khi cần. */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+}
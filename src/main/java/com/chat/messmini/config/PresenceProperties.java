@@ -0,0 +1,32 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.presence")
+public class PresenceProperties {
+
+    public enum Store {
+        /** Trong bộ nhớ của JVM: đủ cho một node và cho test. */
+        LOCAL,
+        /** Redis dùng chung cho mọi node. */
+        REDIS
+    }
+
+    /** Khoảng thời gian gom các thay đổi online/offline trước khi phát một delta. */
+    private Duration broadcastWindow = Duration.ofMillis(250);
+
+    private Store store = Store.LOCAL;
+
+    /** Id của node trong presence store; để trống thì sinh ngẫu nhiên mỗi lần khởi động. */
+    private String nodeId;
+
+    /** Chu kỳ node làm mới các user đang có session trên nó. */
+    private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+    /** Entry không được làm mới trong khoảng này (node chết) được coi là offline. */
+    private Duration ttl = Duration.ofSeconds(30);
+}
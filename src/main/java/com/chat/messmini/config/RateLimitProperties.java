@@ -0,0 +1,43 @@
+package com.chat.messmini.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /** Chu kỳ quét bỏ các bucket đã đầy trở lại (user im lặng hoặc đã ngắt kết nối). */
+    private Duration evictionInterval = Duration.ofSeconds(30);
+
+    /** Giới hạn chung cho mọi frame SEND của một user, cộng dồn mọi đích. */
+    private Rule user = new Rule("*", 20, 40);
+
+    /** Giới hạn riêng theo đích, khớp chính xác với destination của frame SEND. */
+    private List<Rule> destinations = new ArrayList<>(List.of(
+        new Rule("/app/chat.private", 5, 20),
+        new Rule("/app/chat.room", 5, 20),
+        new Rule("/app/chat.typing", 4, 8)
+    ));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rule {
+        private String destination;
+
+        /** Tốc độ nạp lại token mỗi giây. */
+        private double permitsPerSecond;
+
+        /** Số frame tối đa gửi dồn một lúc. */
+        private int burst;
+    }
+}
@@ -0,0 +1,16 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.cache.rooms")
+public class RoomCacheProperties {
+    /** Số phòng tối đa giữ tập thành viên trong cache. */
+    private long maximumSize = 50_000;
+
+    /** Bỏ tập thành viên của phòng không có tin nhắn/kiểm tra quyền trong khoảng này. */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+}
@@ -0,0 +1,23 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.search")
+public class SearchProperties {
+    /** Thư mục chứa index Lucene của tin nhắn. */
+    private Path indexDir = Path.of("data", "search-index");
+
+    /** Chu kỳ mở lại searcher để thấy các tin nhắn vừa được index. */
+    private Duration refreshInterval = Duration.ofSeconds(1);
+
+    /** Chu kỳ commit index xuống đĩa. */
+    private Duration commitInterval = Duration.ofSeconds(30);
+
+    /** Xóa và dựng lại toàn bộ index từ DB khi khởi động. */
+    private boolean rebuild = false;
+}
@@ -4,6 +4,7 @@ package com.chat.messmini.config;
 
 import com.chat.messmini.service.CustomUserDetailsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -30,6 +31,9 @@ public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
 
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -40,6 +44,11 @@ public class SecurityConfig {
                 .requestMatchers("/register", "/login", "/api/auth/**").permitAll()
                 .requestMatchers("/ws/**", "/topic/**", "/app/**", "/queue/**", "/user/**").permitAll()
                 .requestMatchers("/uploads/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                // Actuator chạy trên management.server.port riêng (bind loopback); chỉ request tới cổng đó
+                // mới được scrape /actuator/prometheus không cần đăng nhập
+                .requestMatchers(request -> request.getLocalPort() == managementPort
+                    && request.getRequestURI().startsWith("/actuator/")).permitAll()
                 .requestMatchers("/api/**").authenticated()
                 .anyRequest().authenticated()
             )
@@ -0,0 +1,16 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.cache.suggestions")
+public class SuggestionCacheProperties {
+    /** Số user tối đa giữ bộ đếm ứng viên gợi ý kết bạn. */
+    private long maximumSize = 10_000;
+
+    /** Bỏ bộ đếm của user không xem gợi ý trong khoảng này; lần xem sau dựng lại từ đồ thị. */
+    private Duration expireAfterAccess = Duration.ofMinutes(15);
+}
@@ -0,0 +1,52 @@
+package com.chat.messmini.config;
+
+import com.chat.messmini.service.MessagePipelineMetrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+/**
+ * Bọc converter JSON của {@code @MessageMapping} để đo chặng decode của các frame tin nhắn.
+ * Chiều ghi ({@code toMessage}) đi thẳng tới converter gốc.
+ */
+class TimedMessageConverter implements SmartMessageConverter {
+
+    private final SmartMessageConverter delegate;
+    private final MessagePipelineMetrics metrics;
+
+    TimedMessageConverter(SmartMessageConverter delegate, MessagePipelineMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object fromMessage(Message<?> message, Class<?> targetClass) {
+        return fromMessage(message, targetClass, null);
+    }
+
+    @Override
+    public Object fromMessage(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        MessagePipelineMetrics.Path path =
+            MessagePipelineMetrics.Path.ofDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (path == null) {
+            return delegate.fromMessage(message, targetClass, conversionHint);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.fromMessage(message, targetClass, conversionHint);
+        } finally {
+            metrics.record(path, MessagePipelineMetrics.Stage.DECODE, start);
+        }
+    }
+
+    @Override
+    public Message<?> toMessage(Object payload, MessageHeaders headers) {
+        return delegate.toMessage(payload, headers);
+    }
+
+    @Override
+    public Message<?> toMessage(Object payload, MessageHeaders headers, Object conversionHint) {
+        return delegate.toMessage(payload, headers, conversionHint);
+    }
+}
@@ -0,0 +1,20 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.typing")
+public class TypingProperties {
+
+    /** Không nhận thêm frame "đang gõ" trong khoảng này thì chỉ báo tự tắt. */
+    private Duration ttl = Duration.ofSeconds(6);
+
+    /** Khoảng cách tối thiểu giữa hai frame gửi cho cùng một cặp người gửi / người nhận. */
+    private Duration minFrameInterval = Duration.ofMillis(750);
+
+    /** Chu kỳ quét để gửi các thay đổi bị hoãn và tắt chỉ báo hết hạn. */
+    private Duration sweepInterval = Duration.ofMillis(250);
+}
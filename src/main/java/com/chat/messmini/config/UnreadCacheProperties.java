@@ -0,0 +1,22 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.cache.unread")
+public class UnreadCacheProperties {
+    /** Số user tối đa giữ bộ đếm tin chưa đọc trong bộ nhớ. */
+    private long maximumSize = 100_000;
+
+    /** Bỏ bộ đếm của user không được đọc trong khoảng này, kể cả user chỉ gọi REST không mở WebSocket. */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+
+    /**
+     * Nạp lại bộ đếm từ DB sau khoảng này dù vẫn đang được dùng: khi chạy nhiều node, bộ đếm chỉ
+     * nhận sự kiện của node mình nên đây là giới hạn thời gian lệch.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
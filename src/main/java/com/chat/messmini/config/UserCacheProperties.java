@@ -0,0 +1,16 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.cache.users")
+public class UserCacheProperties {
+    /** Số user tối đa giữ trong cache, mỗi khóa (id, username) tính riêng. */
+    private long maximumSize = 100_000;
+
+    /** Thời gian sống của một bản chụp kể từ lúc nạp, phòng khi bỏ lỡ event cập nhật. */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
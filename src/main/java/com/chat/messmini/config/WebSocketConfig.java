@@ -1,20 +1,179 @@
 package com.chat.messmini.config;
 
+import com.chat.messmini.service.InboundRateLimiter;
+import com.chat.messmini.service.MessagePipelineMetrics;
+import com.chat.messmini.service.OutboundBackpressureGuard;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final BrokerProperties brokerProperties;
+    private final WebSocketProperties webSocketProperties;
+    private final OutboundBackpressureGuard outboundBackpressureGuard;
+    private final InboundRateLimiter inboundRateLimiter;
+    private final MessagePipelineMetrics messagePipelineMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if (brokerProperties.getMode() == BrokerProperties.Mode.RELAY) {
+            configureRelay(config);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Guard backpressure tự giữ thứ tự theo session, không chồng thêm hàng đợi của Spring
+        WebSocketProperties.Outbound outbound = webSocketProperties.getOutbound();
+        config.setPreservePublishOrder(outbound.isPreservePublishOrder() && !outbound.getBackpressure().isEnabled());
+    }
+
+    /**
+     * Các handler {@code @MessageMapping} chặn trên JPA. Ở chế độ virtual mỗi message chạy trên
+     * một virtual thread nên một truy vấn chậm không chiếm chỗ của session khác; thứ tự trong một
+     * session được giữ bởi {@code preserveReceiveOrder} ở {@link #registerStompEndpoints}.
+     * <p>
+     * Dùng {@code executor(...)} thay cho {@code taskExecutor()} vì executor đặt tường minh được ưu
+     * tiên hơn, kể cả khi Spring Boot đã gán {@code applicationTaskExecutor} cho channel.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        WebSocketProperties.Inbound inbound = webSocketProperties.getInbound();
+        if (inbound.getExecutor() == WebSocketProperties.ExecutorType.VIRTUAL) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-inbound-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inbound.getMaxConcurrency());
+            registration.executor(executor);
+        } else {
+            registration.executor(threadPool("ws-inbound-", inbound.getCorePoolSize(),
+                inbound.getMaxPoolSize(), inbound.getQueueCapacity(), Duration.ofSeconds(60)));
+        }
+        // Chặn trước khi frame vào executor, frame bị từ chối không chiếm thread nào
+        registration.interceptors(inboundRateLimiter);
+        log.info("Client inbound channel executor: {}", inbound.getExecutor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        WebSocketProperties.Outbound outbound = webSocketProperties.getOutbound();
+        registration.executor(threadPool("ws-outbound-", outbound.getCorePoolSize(),
+            outbound.getMaxPoolSize(), outbound.getQueueCapacity(), outbound.getKeepAlive()));
+        if (outbound.getBackpressure().isEnabled()) {
+            registration.interceptors(outboundBackpressureGuard);
+        }
+    }
+
+    /**
+     * Bọc converter JSON (do Spring Boot thêm vào danh sách) để đo chặng decode.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.replaceAll(converter -> converter instanceof MappingJackson2MessageConverter jackson
+            ? new TimedMessageConverter(jackson, messagePipelineMetrics)
+            : converter);
+        return true;
+    }
+
+    /**
+     * Giới hạn của Spring cho từng session: vượt thời gian ghi hoặc bộ đệm gửi thì session bị đóng.
+     * Phần chính sách theo mức (bỏ typing, gộp presence) nằm ở {@link OutboundBackpressureGuard}.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        WebSocketProperties.Transport transport = webSocketProperties.getTransport();
+        registration.setSendTimeLimit((int) transport.getSendTimeLimit().toMillis());
+        registration.setSendBufferSizeLimit((int) transport.getSendBufferSizeLimit().toBytes());
+        registration.setMessageSizeLimit((int) transport.getMessageSizeLimit().toBytes());
+        if (webSocketProperties.getOutbound().getBackpressure().isEnabled()) {
+            registration.addDecoratorFactory(outboundBackpressureGuard::decorate);
+        }
+    }
+
+    /**
+     * Chưa initialize: executor được trả về từ bean {@code clientInbound/OutboundChannelExecutor}
+     * nên container gọi {@code afterPropertiesSet} và {@code destroy}.
+     */
+    private static ThreadPoolTaskExecutor threadPool(String prefix, int core, int max, int queue, Duration keepAlive) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(max);
+        executor.setQueueCapacity(queue);
+        executor.setKeepAliveSeconds((int) keepAlive.toSeconds());
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Chuyển /topic và /queue tới STOMP broker ngoài. Hai topic broadcast giúp
+     * {@code convertAndSendToUser} tìm được user đang kết nối với node khác: registry user được
+     * chia sẻ giữa các node, và message tới user không có session cục bộ được phát cho mọi node.
+     */
+    private void configureRelay(MessageBrokerRegistry config) {
+        BrokerProperties.Relay relay = brokerProperties.getRelay();
+        StompBrokerRelayRegistration registration = config.enableStompBrokerRelay("/topic", "/queue")
+            .setRelayHost(relay.getHost())
+            .setRelayPort(relay.getPort())
+            .setClientLogin(relay.getClientLogin())
+            .setClientPasscode(relay.getClientPasscode())
+            .setSystemLogin(relay.getSystemLogin())
+            .setSystemPasscode(relay.getSystemPasscode())
+            .setUserDestinationBroadcast(relay.getUserDestinationBroadcast())
+            .setUserRegistryBroadcast(relay.getUserRegistryBroadcast());
+        if (StringUtils.hasText(relay.getVirtualHost())) {
+            registration.setVirtualHost(relay.getVirtualHost());
+        }
+        config.configureBrokerChannel().interceptors(new BroadcastHeaderFilter());
+        log.info("STOMP broker relay enabled: {}:{}", relay.getHost(), relay.getPort());
+    }
+
+    /**
+     * Khi node đích chuyển tiếp message nhận từ topic broadcast tới {@code /queue/...-user{session}},
+     * Spring chép lại native header của message broadcast, gồm cả {@code destination-type=MULTICAST}
+     * mà Artemis gắn cho topic. Artemis định tuyến theo header đó và bỏ message vì queue của session
+     * là anycast, nên header bị gỡ để broker định tuyến theo prefix của đích.
+     */
+    private static final class BroadcastHeaderFilter implements ChannelInterceptor {
+
+        private static final String DESTINATION_TYPE = "destination-type";
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            if (!(message.getHeaders().get(NativeMessageHeaderAccessor.NATIVE_HEADERS) instanceof Map<?, ?> nativeHeaders)
+                    || !nativeHeaders.containsKey(DESTINATION_TYPE)) {
+                return message;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            accessor.removeNativeHeader(DESTINATION_TYPE);
+            return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+        }
     }
 
     @Override
@@ -22,5 +181,6 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        registry.setPreserveReceiveOrder(webSocketProperties.getInbound().isPreserveReceiveOrder());
     }
 }
@@ -0,0 +1,88 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.websocket")
+public class WebSocketProperties {
+
+    public enum ExecutorType {
+        /** Pool thread nền tảng cố định, giống mặc định của Spring. */
+        PLATFORM,
+        /** Mỗi message một virtual thread: handler chặn trên JDBC không giữ thread hệ điều hành. */
+        VIRTUAL
+    }
+
+    private final Inbound inbound = new Inbound();
+    private final Outbound outbound = new Outbound();
+    private final Transport transport = new Transport();
+
+    @Data
+    public static class Inbound {
+        private ExecutorType executor = ExecutorType.PLATFORM;
+
+        /**
+         * Xử lý message của cùng một session theo đúng thứ tự nhận; các session khác nhau vẫn
+         * chạy song song.
+         */
+        private boolean preserveReceiveOrder = true;
+
+        /** Chế độ virtual: số message xử lý đồng thời tối đa, -1 là không giới hạn. */
+        private int maxConcurrency = -1;
+
+        /** Chế độ platform. */
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int maxPoolSize = Integer.MAX_VALUE;
+        private int queueCapacity = Integer.MAX_VALUE;
+    }
+
+    @Data
+    public static class Outbound {
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int maxPoolSize = Integer.MAX_VALUE;
+        private int queueCapacity = Integer.MAX_VALUE;
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        /**
+         * Gửi message tới một session theo đúng thứ tự publish. Khi backpressure bật, guard đã tự
+         * giữ thứ tự nên cờ này bị bỏ qua.
+         */
+        private boolean preservePublishOrder = true;
+
+        private final Backpressure backpressure = new Backpressure();
+    }
+
+    @Data
+    public static class Backpressure {
+        private boolean enabled = true;
+
+        /** Từ độ sâu hàng đợi này trở lên, frame thuộc dropDestinations/coalesceDestinations bị bỏ. */
+        private int dropThreshold = 32;
+
+        /** Vượt một trong hai giới hạn cứng này thì session bị đóng. */
+        private int maxQueuedMessages = 1000;
+        private DataSize maxQueuedBytes = DataSize.ofMegabytes(1);
+
+        /** Frame bỏ được mà không cần bù: trạng thái đang gõ. */
+        private List<String> dropDestinations = List.of("/queue/typing");
+
+        /** Frame bỏ được nhưng phải gửi lại một bản gộp khi hàng đợi cạn: presence delta. */
+        private List<String> coalesceDestinations = List.of("/queue/presence");
+    }
+
+    @Data
+    public static class Transport {
+        /** Một lần ghi ra socket treo lâu hơn thời gian này thì session bị đóng. */
+        private Duration sendTimeLimit = Duration.ofSeconds(10);
+        private DataSize sendBufferSizeLimit = DataSize.ofKilobytes(512);
+
+        /** Kích thước tối đa của một frame inbound. */
+        private DataSize messageSizeLimit = DataSize.ofKilobytes(64);
+    }
+}
@@ -0,0 +1,28 @@
+package com.chat.messmini.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "messmini.chat.write-behind")
+public class WriteBehindProperties {
+    /** Số tin nhắn tối đa trong một lần commit. */
+    private int batchSize = 100;
+
+    /**
+     * Thời gian tối đa chờ gom thêm tin nhắn trước khi commit. 0: commit ngay những gì đang có
+     * trong hàng đợi; lô vẫn lớn dần khi tải cao vì tin nhắn dồn lại trong lúc commit trước chạy.
+     */
+    private Duration maxLinger = Duration.ZERO;
+
+    /** Sức chứa hàng đợi giữa broker và writer. */
+    private int queueCapacity = 10_000;
+
+    /** Thời gian tối đa luồng inbound chờ khi hàng đợi đầy. */
+    private Duration enqueueTimeout = Duration.ofSeconds(1);
+
+    /** Thời gian tối đa chờ writer xả hết hàng đợi khi tắt ứng dụng. */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -3,13 +3,18 @@ package com.chat.messmini.controller;
 import com.chat.messmini.dto.LoginRequest;
 import com.chat.messmini.dto.RegisterRequest;
 import com.chat.messmini.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -20,6 +25,7 @@ public class AuthApiController {
 
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
+    private final SecurityContextRepository securityContextRepository = new HttpSessionSecurityContextRepository();
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
@@ -45,7 +51,9 @@ public class AuthApiController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<?> login(@RequestBody LoginRequest request,
+                                   HttpServletRequest httpRequest,
+                                   HttpServletResponse httpResponse) {
         log.info("Nhận request đăng nhập cho user: {}", request.getUsername());
         try {
             Authentication authentication = authenticationManager.authenticate(
@@ -55,7 +63,15 @@ public class AuthApiController {
                 )
             );
             
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+            // Spring Security 6 không tự lưu context: phải ghi vào HTTP session thì các request
+            // sau (REST, handshake /ws) mới nhận ra user. Đổi session id để chống session fixation
+            if (httpRequest.getSession(false) != null) {
+                httpRequest.changeSessionId();
+            }
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+            securityContextRepository.saveContext(context, httpRequest, httpResponse);
             log.info("Đăng nhập thành công cho user: {}", request.getUsername());
             return ResponseEntity.ok().body("Đăng nhập thành công");
         } catch (Exception e) {
@@ -1,20 +1,40 @@
 package com.chat.messmini.controller;
 
-import com.chat.messmini.entity.Message;
+import com.chat.messmini.dto.ChatMessageView;
+import com.chat.messmini.dto.CursorPage;
+import com.chat.messmini.dto.PresenceSnapshot;
+import com.chat.messmini.dto.PrivateMessagePayload;
+import com.chat.messmini.dto.UnreadSnapshot;
+import com.chat.messmini.dto.UserSnapshot;
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.User;
 import com.chat.messmini.model.ChatMessage;
 import com.chat.messmini.security.CustomUserDetails;
 import com.chat.messmini.service.ChatService;
+import com.chat.messmini.service.EncryptedContent;
 import com.chat.messmini.service.FriendshipService;
+import com.chat.messmini.service.InboundRateLimiter;
+import com.chat.messmini.service.MessagePipelineMetrics;
+import com.chat.messmini.service.MessagePipelineMetrics.Path;
+import com.chat.messmini.service.MessagePipelineMetrics.Stage;
+import com.chat.messmini.service.PresenceBroadcaster;
+import com.chat.messmini.service.PresenceRegistry;
+import com.chat.messmini.service.PresenceStore;
+import com.chat.messmini.service.StompPayloadEncoder;
+import com.chat.messmini.service.TypingTracker;
+import com.chat.messmini.service.UnreadCounterService;
 import com.chat.messmini.service.UserService;
+import com.chat.messmini.service.UserSnapshotCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -25,23 +45,29 @@ import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.security.Principal;
-import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 @Controller
 @RequiredArgsConstructor
 @Slf4j
 public class ChatController {
 
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
     private final UserService userService;
+    private final UserSnapshotCache userSnapshotCache;
+    private final StompPayloadEncoder stompPayloadEncoder;
     private final FriendshipService friendshipService;
-    private final Map<String, Long> onlineUsersSession = new ConcurrentHashMap<>();
-    private final Map<String, Boolean> userOnlineStatus = new ConcurrentHashMap<>();
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceStore presenceStore;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final UnreadCounterService unreadCounterService;
+    private final TypingTracker typingTracker;
+    private final MessagePipelineMetrics messagePipelineMetrics;
 
     @GetMapping("/chat")
     public String chat(Model model, @AuthenticationPrincipal UserDetails userDetails) {
@@ -67,21 +93,40 @@ public class ChatController {
 
     @GetMapping("/api/chat/history/{userId}")
     @ResponseBody
-    public List<ChatMessage> getChatHistory(@PathVariable Long userId, @AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<?> getChatHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
         log.info("Getting chat history between users: {} and {}", userDetails.getUsername(), userId);
         try {
-            List<ChatMessage> messages = chatService.getChatHistory(
+            CursorPage<ChatMessageView> page = chatService.getChatHistory(
                 ((CustomUserDetails) userDetails).getId(),
-                userId
+                userId,
+                before,
+                after,
+                limit
             );
-            log.info("Found {} messages in chat history", messages.size());
-            return messages;
+            log.info("Found {} messages in chat history", page.getItems().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error getting chat history: {}", e.getMessage(), e);
             throw e;
         }
     }
 
+    @PostMapping("/api/chat/history/{userId}/read")
+    @ResponseBody
+    public ResponseEntity<Map<String, Integer>> markConversationAsRead(
+            @PathVariable Long userId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        int updated = chatService.markConversationAsRead(((CustomUserDetails) userDetails).getId(), userId);
+        return ResponseEntity.ok(Map.of("updated", updated));
+    }
+
     @MessageMapping("/user.connected")
     public void handleUserConnected(@Payload Map<String, String> userInfo, SimpMessageHeaderAccessor headerAccessor) {
         log.info("Received user.connected event: {}", userInfo);
@@ -97,13 +142,8 @@ public class ChatController {
                 log.info("Processing user connection - username: {}, userId: {}, sessionId: {}", 
                     userDetails.getUsername(), userId, sessionId);
                 
-                onlineUsersSession.put(sessionId, userId);
-                chatService.userConnected(userId);
-                
-                // Broadcast updated user list
-                List<Map<String, Object>> onlineUsers = chatService.getOnlineUsers();
-                log.info("Broadcasting updated online users list: {}", onlineUsers);
-                messagingTemplate.convertAndSend("/topic/users", onlineUsers);
+                // Session thường đã được đăng ký từ SessionConnectEvent, gọi lại không có tác dụng
+                presenceRegistry.sessionConnected(sessionId, userId, userDetails.getUsername());
             }
         }
     }
@@ -121,22 +161,10 @@ public class ChatController {
             String username = user.getName();
             log.info("User connected: {} with session: {}", username, sessionId);
             
-            // Lấy thông tin user từ username
-            User userObj = userService.findByUsername(username);
-            if (userObj != null) {
-                // Lưu sessionId và userId vào map
-                onlineUsersSession.put(sessionId, userObj.getId());
-                // Cập nhật trạng thái online
-                userOnlineStatus.put(username, true);
-                userObj.setOnline(true);
-                userService.save(userObj);
-                
-                // Thông báo cho tất cả người dùng về trạng thái mới
-                messagingTemplate.convertAndSend("/topic/online-users", userObj);
-                
-                // Broadcast danh sách người dùng online
-                List<User> onlineUsers = userService.getOnlineUsers();
-                messagingTemplate.convertAndSend("/topic/users", onlineUsers);
+            // Lấy userId từ principal, chỉ truy vấn DB khi principal không mang sẵn thông tin user
+            Long userId = resolveUserId(user);
+            if (userId != null) {
+                presenceRegistry.sessionConnected(sessionId, userId, username);
             }
         } catch (Exception e) {
             log.error("Error handling WebSocket connect: {}", e.getMessage(), e);
@@ -146,108 +174,129 @@ public class ChatController {
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         try {
-            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
-            String sessionId = headers.getSessionId();
-            Principal user = headers.getUser();
-            if (user == null) {
-                log.warn("WebSocket disconnect without Principal");
-                return;
-            }
-            String username = user.getName();
-            log.info("User disconnected: {} with session: {}", username, sessionId);
-            
-            // Lấy userId từ sessionId
-            Long userId = onlineUsersSession.remove(sessionId);
-            if (userId != null) {
-                // Lấy thông tin user
-                userService.findById(userId).ifPresent(userObj -> {
-                    // Kiểm tra xem user còn session nào khác không
-                    boolean hasOtherSessions = onlineUsersSession.values().stream()
-                        .anyMatch(id -> id.equals(userId));
-                    
-                    if (!hasOtherSessions) {
-                        // Nếu không còn session nào, cập nhật trạng thái offline
-                        userOnlineStatus.remove(username);
-                        userObj.setOnline(false);
-                        userService.save(userObj);
-                        
-                        // Thông báo cho tất cả người dùng về trạng thái mới
-                        messagingTemplate.convertAndSend("/topic/online-users", userObj);
-                        
-                        // Broadcast danh sách người dùng online
-                        List<User> onlineUsers = userService.getOnlineUsers();
-                        messagingTemplate.convertAndSend("/topic/users", onlineUsers);
-                    }
-                });
-            }
+            String sessionId = event.getSessionId();
+            Long userId = presenceRegistry.sessionDisconnected(sessionId);
+            log.info("User disconnected: {} with session: {}", userId, sessionId);
         } catch (Exception e) {
             log.error("Error handling WebSocket disconnect: {}", e.getMessage(), e);
         }
     }
 
+    @SubscribeMapping("/presence")
+    public PresenceSnapshot getPresenceSnapshot(Principal principal) {
+        // Snapshot bạn bè online một lần khi client subscribe, sau đó client nhận delta từ /user/queue/presence
+        return presenceBroadcaster.snapshot(resolveUserId(principal));
+    }
+
+    @SubscribeMapping("/unread")
+    public UnreadSnapshot getUnreadSnapshot(Principal principal) {
+        // Số tin chưa đọc hiện tại, các thay đổi sau đó được đẩy qua /user/queue/unread
+        return unreadCounterService.snapshot(resolveUserId(principal));
+    }
+
+    private Long resolveUserId(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return userDetails.getId();
+        }
+        return userSnapshotCache.findByUsername(principal.getName())
+            .map(UserSnapshot::getId)
+            .orElse(null);
+    }
+
+    private void sendToUser(String username, String destination, Message<byte[]> frame) {
+        // Giống convertAndSendToUser nhưng không convert lại payload
+        messagingTemplate.send(
+            messagingTemplate.getUserDestinationPrefix() + username.replace("/", "%2F") + destination, frame);
+    }
+
+    /**
+     * Báo cho người gửi rằng tin nhắn không được lưu (hàng đợi đầy, lỗi DB, người nhận không tồn
+     * tại), để client đánh dấu bản đã hiển thị thay vì chờ bản echo không bao giờ tới.
+     */
+    private void sendNotSent(SimpMessageHeaderAccessor headerAccessor, String clientMessageId) {
+        Principal principal = headerAccessor.getUser();
+        if (principal == null) {
+            return;
+        }
+        Map<String, Object> notice = new HashMap<>();
+        notice.put("error", "MESSAGE_NOT_SENT");
+        notice.put("destination", "/app/chat.private");
+        if (clientMessageId != null) {
+            notice.put("clientMessageId", clientMessageId);
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(principal.getName(), InboundRateLimiter.ERRORS_QUEUE, notice);
+        } catch (Exception e) {
+            log.warn("Error sending failure notice to {}: {}", principal.getName(), e.getMessage());
+        }
+    }
+
+    private static String clientMessageIdOf(Object value) {
+        if (value instanceof String id && !id.isEmpty() && id.length() <= MAX_CLIENT_MESSAGE_ID_LENGTH) {
+            return id;
+        }
+        return null;
+    }
+
     @MessageMapping("/chat.private")
-    public void handlePrivateMessage(@Payload Map<String, String> payload, SimpMessageHeaderAccessor headerAccessor) {
+    public void handlePrivateMessage(@Payload Map<String, Object> payload, SimpMessageHeaderAccessor headerAccessor) {
         try {
-            String sender = payload.get("sender");
-            String receiver = payload.get("receiver");
-            String content = payload.get("content");
+            String sender = String.valueOf(payload.get("sender"));
+            String receiver = String.valueOf(payload.get("receiver"));
+            String content = (String) payload.get("content");
             
-            log.info("Received private message from {} to {}: {}", sender, receiver, content);
+            log.debug("Received private message from {} to {}", sender, receiver);
             
-            // Lưu tin nhắn vào database
             ChatMessage chatMessage = new ChatMessage();
             chatMessage.setSenderId(Long.parseLong(sender));
             chatMessage.setReceiverId(Long.parseLong(receiver));
             chatMessage.setContent(content);
-            chatMessage.setTimestamp(LocalDateTime.now().toString());
-            
-            Message savedMessage = chatService.saveMessage(chatMessage);
-            
-            // Gửi tin nhắn đến người nhận
-            messagingTemplate.convertAndSendToUser(
-                receiver,
-                "/queue/messages",
-                Map.of(
-                    "id", savedMessage.getId(),
-                    "senderId", savedMessage.getSender().getId(),
-                    "receiverId", savedMessage.getReceiver().getId(),
-                    "content", savedMessage.getContent(),
-                    "timestamp", savedMessage.getTimestamp().toString(),
-                    "read", savedMessage.isRead()
-                )
-            );
-            
-            // Gửi tin nhắn đến người gửi (để xác nhận)
-            messagingTemplate.convertAndSendToUser(
-                sender,
-                "/queue/messages",
-                Map.of(
-                    "id", savedMessage.getId(),
-                    "senderId", savedMessage.getSender().getId(),
-                    "receiverId", savedMessage.getReceiver().getId(),
-                    "content", savedMessage.getContent(),
-                    "timestamp", savedMessage.getTimestamp().toString(),
-                    "read", savedMessage.isRead()
-                )
-            );
+            // Cờ của client chỉ để đối chiếu: ciphertext được nhận dạng ở server để không bao giờ bị index
+            chatMessage.setEncrypted(EncryptedContent.isCiphertext(content));
+            if (chatMessage.isEncrypted() != Boolean.TRUE.equals(payload.get("encrypted"))) {
+                log.debug("Encrypted flag from {} does not match content, using {}", sender, chatMessage.isEncrypted());
+            }
+            String clientMessageId = clientMessageIdOf(payload.get("clientMessageId"));
+
+            // Lưu tin nhắn theo lô, chỉ gửi cho hai bên sau khi lô đã commit
+            long persistStart = System.nanoTime();
+            chatService.saveMessageAsync(chatMessage).whenComplete((savedMessage, error) -> {
+                if (error != null) {
+                    log.error("Error saving private message from {} to {}: {}", sender, receiver, error.getMessage());
+                    sendNotSent(headerAccessor, clientMessageId);
+                    return;
+                }
+                messagePipelineMetrics.record(Path.PRIVATE, Stage.PERSIST, persistStart);
+                long fanoutStart = System.nanoTime();
+                // Encode một lần, cùng một frame cho người nhận và bản echo của người gửi
+                Message<byte[]> frame = stompPayloadEncoder.encode(
+                    PrivateMessagePayload.of(savedMessage, clientMessageId));
+                sendToUser(savedMessage.getReceiverUsername(), "/queue/messages", frame);
+                if (!savedMessage.getSenderUsername().equals(savedMessage.getReceiverUsername())) {
+                    sendToUser(savedMessage.getSenderUsername(), "/queue/messages", frame);
+                }
+                messagePipelineMetrics.record(Path.PRIVATE, Stage.FANOUT, fanoutStart);
+            });
         } catch (Exception e) {
             log.error("Error handling private message: {}", e.getMessage(), e);
         }
     }
 
     @GetMapping("/api/chat/users")
-    public ResponseEntity<List<User>> getUsers(
-            @AuthenticationPrincipal User currentUser,
+    public ResponseEntity<List<UserSummary>> getUsers(
+            @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam(required = false) String channelType) {
         log.info("Getting users for channel type: {}", channelType);
         
-        List<User> users;
+        List<UserSummary> users;
         if ("GENERAL".equals(channelType)) {
             // Trong kênh tổng hợp, hiển thị tất cả người dùng online
-            users = userService.getOnlineUsers();
+            users = userService.getSummaries(presenceStore.onlineUserIds());
+            users.forEach(user -> user.setOnline(true));
         } else {
             // Trong các kênh khác, chỉ hiển thị bạn bè
-            users = friendshipService.getFriends(currentUser.getId());
+            users = friendshipService.getFriendSummaries(((CustomUserDetails) userDetails).getId());
         }
         
         return ResponseEntity.ok(users);
@@ -255,27 +304,27 @@ public class ChatController {
 
     @GetMapping("/api/chat/online-users")
     @ResponseBody
-    public ResponseEntity<List<User>> getOnlineUsers(
-            @AuthenticationPrincipal UserDetails userDetails) {
-        log.info("Getting online users for user: {}", userDetails.getUsername());
+    public ResponseEntity<CursorPage<UserSummary>> getOnlineUsers(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("Getting online friends for user: {}", userDetails.getUsername());
         
         try {
             if (userDetails instanceof CustomUserDetails) {
                 CustomUserDetails customUserDetails = (CustomUserDetails) userDetails;
-                // Lấy tất cả người dùng online
-                List<User> onlineUsers = userService.getOnlineUsers();
-                
-                // Lọc ra những người không phải chính mình
-                List<User> otherOnlineUsers = onlineUsers.stream()
-                    .filter(user -> !user.getId().equals(customUserDetails.getId()))
-                    .collect(Collectors.toList());
+                // Chỉ bạn bè đang online, lấy từ trạng thái presence trong bộ nhớ
+                CursorPage<UserSummary> onlineFriends = friendshipService.getOnlineFriends(
+                    customUserDetails.getId(), after, limit);
                 
-                log.info("Found {} online users", otherOnlineUsers.size());
-                return ResponseEntity.ok(otherOnlineUsers);
+                log.info("Found {} online friends", onlineFriends.getItems().size());
+                return ResponseEntity.ok(onlineFriends);
             } else {
                 log.error("Invalid user details type: {}", userDetails.getClass().getName());
                 return ResponseEntity.badRequest().build();
             }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error getting online users: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -287,9 +336,6 @@ public class ChatController {
         String username = payload.get("sender");
         log.info("User connected: {}", username);
         
-        // Cập nhật trạng thái online
-        userOnlineStatus.put(username, true);
-        
         // Gửi thông báo trạng thái online cho tất cả người dùng
         messagingTemplate.convertAndSend("/topic/public", Map.of(
             "type", "JOIN",
@@ -298,22 +344,17 @@ public class ChatController {
         ));
     }
 
+    /**
+     * Người gửi lấy từ principal, không tin field {@code sender} của client. Tracker chỉ chuyển
+     * tiếp khi trạng thái đổi và tự tắt chỉ báo hết hạn.
+     */
     @MessageMapping("/chat.typing")
-    public void sendTypingStatus(@Payload Map<String, Object> payload) {
-        String sender = (String) payload.get("sender");
-        String receiver = (String) payload.get("receiver");
-        Boolean typing = (Boolean) payload.get("typing");
-        
-        log.info("Typing status from {} to {}: {}", sender, receiver, typing);
-        
-        messagingTemplate.convertAndSendToUser(
-            receiver,
-            "/queue/typing",
-            Map.of(
-                "sender", sender,
-                "typing", typing
-            )
-        );
+    public void sendTypingStatus(@Payload Map<String, Object> payload, Principal principal) {
+        if (principal == null || !(payload.get("receiver") instanceof String receiver)
+                || receiver.isBlank() || receiver.equals(principal.getName())) {
+            return;
+        }
+        typingTracker.update(principal.getName(), receiver, Boolean.TRUE.equals(payload.get("typing")));
     }
 
     @GetMapping("/api/chat/users/{username}")
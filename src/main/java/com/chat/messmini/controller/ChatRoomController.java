@@ -1,19 +1,34 @@
 package com.chat.messmini.controller;
 
+import com.chat.messmini.dto.RoomMessagePayload;
+import com.chat.messmini.dto.RoomMessageView;
+import com.chat.messmini.dto.UserSnapshot;
 import com.chat.messmini.entity.ChatRoom;
-import com.chat.messmini.entity.RoomMessage;
+import com.chat.messmini.security.CustomUserDetails;
 import com.chat.messmini.service.ChatRoomService;
-import com.chat.messmini.service.UserService;
+import com.chat.messmini.service.CursorCodec;
+import com.chat.messmini.service.MessagePipelineMetrics;
+import com.chat.messmini.service.MessagePipelineMetrics.Path;
+import com.chat.messmini.service.MessagePipelineMetrics.Stage;
+import com.chat.messmini.service.RoomMembershipCache;
+import com.chat.messmini.service.StompPayloadEncoder;
+import com.chat.messmini.service.UnreadCounterService;
+import com.chat.messmini.service.UserSnapshotCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Set;
 import java.security.Principal;
@@ -27,13 +42,18 @@ import org.springframework.http.HttpStatus;
 public class ChatRoomController {
     private final ChatRoomService chatRoomService;
     private final SimpMessagingTemplate messagingTemplate;
-    private final UserService userService;
+    private final UserSnapshotCache userSnapshotCache;
+    private final StompPayloadEncoder stompPayloadEncoder;
+    private final ObjectMapper objectMapper;
+    private final UnreadCounterService unreadCounterService;
+    private final MessagePipelineMetrics messagePipelineMetrics;
+    private final RoomMembershipCache roomMembershipCache;
 
     @PostMapping
     public ResponseEntity<ChatRoom> createRoom(
             @RequestBody CreateRoomRequest request,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = ((com.chat.messmini.security.CustomUserDetails) userDetails).getId();
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        Long userId = userDetails.getId();
         return ResponseEntity.ok(chatRoomService.createRoom(
             request.getName(),
             request.getDescription(),
@@ -59,36 +79,89 @@ public class ChatRoomController {
     @MessageMapping("/chat.room")
     public void handleRoomMessage(@Payload RoomMessageRequest request, Principal principal) {
         try {
-            log.info("Received room message request: roomId={}, content={}", request.getRoomId(), request.getContent());
-            log.info("Principal: {}", principal);
+            log.debug("Received room message for room {}", request.getRoomId());
             if (principal == null) {
                 log.warn("Principal is null, không thể lưu tin nhắn phòng!");
                 return;
             }
             String username = principal.getName();
-            com.chat.messmini.entity.User user = userService.findByUsername(username);
-            Long userId = user.getId();
-            RoomMessage message = chatRoomService.sendMessage(request.getRoomId(), userId, request.getContent());
-            log.info("Room message saved with id={}", message.getId());
-            messagingTemplate.convertAndSend("/topic/room." + request.getRoomId(), message);
+            Long userId = userSnapshotCache.findByUsername(username)
+                .map(UserSnapshot::getId)
+                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+            long persistStart = System.nanoTime();
+            RoomMessageView message = chatRoomService.sendMessage(request.getRoomId(), userId, request.getContent());
+            messagePipelineMetrics.record(Path.ROOM, Stage.PERSIST, persistStart);
+            log.debug("Room message saved with id={}", message.getId());
+            // Serialize một lần; broker dùng lại cùng mảng byte cho mọi subscriber của phòng
+            long fanoutStart = System.nanoTime();
+            messagingTemplate.send("/topic/room." + request.getRoomId(),
+                stompPayloadEncoder.encode(RoomMessagePayload.of(request.getRoomId(), message)));
+            messagePipelineMetrics.record(Path.ROOM, Stage.FANOUT, fanoutStart);
         } catch (Exception e) {
             log.error("Error in handleRoomMessage: {}", e.getMessage(), e);
         }
     }
 
     @GetMapping("/{roomId}/messages")
-    public ResponseEntity<List<RoomMessage>> getRoomMessages(@PathVariable Long roomId) {
-        return ResponseEntity.ok(chatRoomService.getRoomMessages(roomId));
+    public ResponseEntity<?> getRoomMessages(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (!roomMembershipCache.isMember(roomId, userDetails.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(chatRoomService.getRoomMessages(roomId, before, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{roomId}/messages/stream")
+    public ResponseEntity<StreamingResponseBody> streamRoomMessages(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) String after,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        // Kiểm tra trước khi trả về body: lỗi trong StreamingResponseBody không đổi được status nữa
+        if (!roomMembershipCache.isMember(roomId, userDetails.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        CursorCodec.Keyset from;
+        try {
+            from = after != null ? CursorCodec.decodeKeyset(after) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // NDJSON: mỗi dòng một tin nhắn, ghi ra ngay trong lúc đọc từ DB
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                chatRoomService.streamRoomMessages(roomId, from, message -> {
+                    try {
+                        writer.write(message);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
     }
 
     @GetMapping
-    public ResponseEntity<List<ChatRoom>> getUserRooms(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<List<ChatRoom>> getUserRooms(@AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         
         try {
-            Long userId = ((com.chat.messmini.security.CustomUserDetails) userDetails).getId();
+            Long userId = userDetails.getId();
             return ResponseEntity.ok(chatRoomService.getUserRooms(userId));
         } catch (Exception e) {
             log.error("Error getting user rooms: {}", e.getMessage(), e);
@@ -99,9 +172,9 @@ public class ChatRoomController {
     @DeleteMapping("/{roomId}")
     public ResponseEntity<?> deleteRoom(
             @PathVariable Long roomId,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
         try {
-            Long userId = ((com.chat.messmini.security.CustomUserDetails) userDetails).getId();
+            Long userId = userDetails.getId();
             chatRoomService.deleteRoom(roomId, userId);
             return ResponseEntity.ok(Map.of("message", "Room successfully deleted"));
         } catch (IllegalArgumentException e) {
@@ -117,12 +190,26 @@ public class ChatRoomController {
     @PostMapping("/{roomId}/read")
     public ResponseEntity<Void> markMessagesAsRead(
             @PathVariable Long roomId,
-            @AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = ((com.chat.messmini.security.CustomUserDetails) userDetails).getId();
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        Long userId = userDetails.getId();
+        if (!roomMembershipCache.isMember(roomId, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         chatRoomService.markMessagesAsRead(roomId, userId);
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/{roomId}/unread")
+    public ResponseEntity<Map<String, Integer>> countUnreadMessages(
+            @PathVariable Long roomId,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        Long userId = userDetails.getId();
+        if (!roomMembershipCache.isMember(roomId, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Map.of("unread", unreadCounterService.roomUnread(userId, roomId)));
+    }
+
     // Request DTOs
     public static class CreateRoomRequest {
         private String name;
@@ -1,7 +1,11 @@
 package com.chat.messmini.controller;
 
+import com.chat.messmini.dto.FriendSuggestion;
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.User;
 import com.chat.messmini.entity.Friendship;
+import com.chat.messmini.security.CustomUserDetails;
+import com.chat.messmini.service.FriendSuggestionService;
 import com.chat.messmini.service.FriendshipService;
 import com.chat.messmini.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.List;
@@ -22,6 +27,7 @@ public class FriendshipController {
 
     private final FriendshipService friendshipService;
     private final UserService userService;
+    private final FriendSuggestionService friendSuggestionService;
 
     @GetMapping("/api/friendships/friends")
     public ResponseEntity<?> getFriends(Authentication authentication) {
@@ -35,10 +41,10 @@ public class FriendshipController {
                         .body("User not found");
             }
             
-            List<User> friends = friendshipService.getFriendsByUserId(user.getId());
-            log.info("Retrieved {} friends for user {}", friends.size(), user.getUsername());
-            
-            return ResponseEntity.ok(friends);
+            // Chỉ các trường hiển thị; trạng thái online lấy từ PresenceRegistry
+            List<UserSummary> summaries = friendshipService.getFriendSummaries(user.getId());
+            log.info("Retrieved {} friends for user {}", summaries.size(), user.getUsername());
+            return ResponseEntity.ok(summaries);
         } catch (Exception e) {
             log.error("Error getting friends: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -46,6 +52,20 @@ public class FriendshipController {
         }
     }
 
+    @GetMapping("/api/friendships/suggestions")
+    public ResponseEntity<?> getSuggestions(@RequestParam(defaultValue = "20") int limit,
+                                            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            // Id có sẵn trong principal, không cần tra lại user theo username
+            List<FriendSuggestion> suggestions = friendSuggestionService.getSuggestions(userDetails.getId(), limit);
+            return ResponseEntity.ok(suggestions);
+        } catch (Exception e) {
+            log.error("Error getting friend suggestions: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error getting friend suggestions: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/api/friends/requests")
     public ResponseEntity<?> getFriendRequests(Authentication authentication) {
         try {
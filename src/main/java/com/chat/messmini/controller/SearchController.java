@@ -0,0 +1,39 @@
+package com.chat.messmini.controller;
+
+import com.chat.messmini.dto.MessageSearchHit;
+import com.chat.messmini.security.CustomUserDetails;
+import com.chat.messmini.service.MessageSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Slf4j
+public class SearchController {
+
+    private final MessageSearchService messageSearchService;
+
+    @GetMapping("/messages")
+    public ResponseEntity<?> searchMessages(@AuthenticationPrincipal CustomUserDetails userDetails,
+                                            @RequestParam String query,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            List<MessageSearchHit> hits = messageSearchService.search(userDetails.getId(), query, limit);
+            return ResponseEntity.ok(hits);
+        } catch (Exception e) {
+            log.error("Error searching messages: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Error searching messages: " + e.getMessage()));
+        }
+    }
+}
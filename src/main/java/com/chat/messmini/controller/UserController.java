@@ -1,5 +1,6 @@
 package com.chat.messmini.controller;
 
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.User;
 import com.chat.messmini.service.UserService;
 import com.chat.messmini.security.CustomUserDetails;
@@ -28,10 +29,11 @@ public class UserController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<User>> searchUsers(@RequestParam String query) {
-        log.info("Searching users with query: {}", query);
-        List<User> users = userService.searchUsers(query);
-        log.info("Found {} users", users.size());
+    public ResponseEntity<List<UserSummary>> searchUsers(@RequestParam String query,
+                                                         @RequestParam(defaultValue = "20") int limit) {
+        log.debug("Searching users with query: {}", query);
+        List<UserSummary> users = userService.searchUsers(query, limit);
+        log.debug("Found {} users", users.size());
         return ResponseEntity.ok(users);
     }
 
@@ -0,0 +1,17 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendSuggestion {
+    private Long id;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+    private boolean online;
+    private int mutualFriends;
+}
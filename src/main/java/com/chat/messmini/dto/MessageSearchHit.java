@@ -0,0 +1,28 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một tin nhắn khớp truy vấn tìm kiếm. {@code type} là "private" (có {@code receiverId})
+ * hoặc "room" (có {@code roomId}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchHit {
+    public static final String PRIVATE = "private";
+    public static final String ROOM = "room";
+
+    private String type;
+    private Long messageId;
+    private Long senderId;
+    private Long receiverId;
+    private Long roomId;
+    private String content;
+    private LocalDateTime timestamp;
+    private float score;
+}
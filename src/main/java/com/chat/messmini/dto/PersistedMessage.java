@@ -0,0 +1,18 @@
+package com.chat.messmini.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class PersistedMessage {
+    Long id;
+    Long senderId;
+    String senderUsername;
+    Long receiverId;
+    String receiverUsername;
+    String content;
+    LocalDateTime timestamp;
+    boolean read;
+    boolean encrypted;
+}
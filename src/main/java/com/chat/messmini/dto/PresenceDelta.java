@@ -0,0 +1,21 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceDelta {
+    public static final String TYPE = "delta";
+
+    private final String type = TYPE;
+    // seq chỉ tăng trong phạm vi một node; client so seq theo từng node gửi
+    private String node;
+    private long seq;
+    private List<Long> online;
+    private List<Long> offline;
+}
@@ -0,0 +1,20 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceSnapshot {
+    public static final String TYPE = "snapshot";
+
+    // Snapshot gửi lại khi resync đi chung /user/queue/presence với delta, client phân biệt bằng type
+    private final String type = TYPE;
+    private String node;
+    private long seq;
+    private List<Long> online;
+}
@@ -0,0 +1,39 @@
+package com.chat.messmini.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.ZoneId;
+
+/**
+ * Frame gửi qua {@code /user/queue/messages} cho cả người nhận lẫn người gửi. {@code clientMessageId}
+ * là id do client đặt khi gửi, được trả lại nguyên vẹn để người gửi khớp bản echo với tin nhắn
+ * đã hiển thị; thời gian là epoch millis.
+ */
+@Value
+@JsonPropertyOrder({"id", "clientMessageId", "senderId", "receiverId", "content", "timestamp", "read", "encrypted"})
+public class PrivateMessagePayload {
+    Long id;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String clientMessageId;
+    Long senderId;
+    Long receiverId;
+    String content;
+    long timestamp;
+    boolean read;
+    boolean encrypted;
+
+    public static PrivateMessagePayload of(PersistedMessage message, String clientMessageId) {
+        return new PrivateMessagePayload(
+            message.getId(),
+            clientMessageId,
+            message.getSenderId(),
+            message.getReceiverId(),
+            message.getContent(),
+            message.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            message.isRead(),
+            message.isEncrypted()
+        );
+    }
+}
@@ -0,0 +1,38 @@
+package com.chat.messmini.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Dạng gửi qua {@code /topic/room.{id}} của một tin nhắn phòng: chỉ các trường client hiển thị,
+ * thời gian là epoch millis. Không tham chiếu entity nào nên Jackson không đi vào
+ * {@code ChatRoom}, danh sách thành viên hay thông tin đăng nhập của người gửi.
+ */
+@Value
+@JsonPropertyOrder({"id", "roomId", "senderId", "senderDisplayName", "content", "timestamp"})
+public class RoomMessagePayload {
+    Long id;
+    Long roomId;
+    Long senderId;
+    String senderDisplayName;
+    String content;
+    long timestamp;
+
+    public static RoomMessagePayload of(Long roomId, RoomMessageView message) {
+        return new RoomMessagePayload(
+            message.getId(),
+            roomId,
+            message.getSenderId(),
+            message.getSenderDisplayName(),
+            message.getContent(),
+            toEpochMillis(message.getTimestamp())
+        );
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
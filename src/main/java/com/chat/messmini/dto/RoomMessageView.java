@@ -0,0 +1,18 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomMessageView {
+    private Long id;
+    private Long senderId;
+    private String senderDisplayName;
+    private String content;
+    private LocalDateTime timestamp;
+}
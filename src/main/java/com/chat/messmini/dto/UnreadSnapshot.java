@@ -0,0 +1,16 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnreadSnapshot {
+    private Map<Long, Integer> conversations;
+    private Map<Long, Integer> rooms;
+    private int totalPrivate;
+}
@@ -0,0 +1,23 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Số tin chưa đọc mới của một cuộc trò chuyện ({@code type = "conversation"}, {@code id} là id
+ * người gửi) hoặc một phòng ({@code type = "room"}, {@code id} là id phòng).
+ * {@code totalPrivate} là tổng tin nhắn riêng chưa đọc của user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnreadUpdate {
+    public static final String CONVERSATION = "conversation";
+    public static final String ROOM = "room";
+
+    private String type;
+    private Long id;
+    private int count;
+    private int totalPrivate;
+}
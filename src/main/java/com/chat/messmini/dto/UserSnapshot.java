@@ -0,0 +1,16 @@
+package com.chat.messmini.dto;
+
+import lombok.Value;
+
+/**
+ * Bản chụp nhẹ của một user dùng trên đường gửi tin nhắn: không có password, roles hay các
+ * quan hệ JPA nên có thể giữ trong cache và chia sẻ giữa các luồng.
+ */
+@Value
+public class UserSnapshot {
+    Long id;
+    String username;
+    String displayName;
+    String avatarUrl;
+    String publicKey;
+}
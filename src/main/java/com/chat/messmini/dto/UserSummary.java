@@ -0,0 +1,20 @@
+package com.chat.messmini.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+    private boolean online;
+
+    public UserSummary(Long id, String username, String displayName, String avatarUrl) {
+        this(id, username, displayName, avatarUrl, false);
+    }
+}
@@ -6,7 +6,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_sender_receiver_id", columnList = "sender_id, receiver_id, id")
+})
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -30,6 +32,10 @@ public class Message {
     @Column(name = "is_read", nullable = false)
     private boolean isRead = false;
 
+    // Nội dung là ciphertext mã hóa phía client, server không đọc được
+    @Column(nullable = false)
+    private boolean encrypted = false;
+
     @PrePersist
     protected void onCreate() {
         timestamp = LocalDateTime.now();
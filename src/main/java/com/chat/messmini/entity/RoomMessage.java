@@ -6,7 +6,10 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "room_messages")
+@Table(name = "room_messages", indexes = {
+    @Index(name = "idx_room_messages_room_timestamp_id", columnList = "room_id, timestamp, id"),
+    @Index(name = "idx_room_messages_room_id_sender", columnList = "room_id, id, sender_id")
+})
 public class RoomMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,6 +25,7 @@ public class RoomMessage {
 
     private String content;
     private LocalDateTime timestamp;
+    // Cờ dùng chung cho mọi thành viên, chỉ giữ cho schema cũ; trạng thái đọc nằm ở RoomReadState
     @Column(name = "is_read")
     private boolean isRead;
 
@@ -0,0 +1,39 @@
+package com.chat.messmini.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Watermark đã đọc của một thành viên trong phòng: mọi tin nhắn có id không lớn hơn
+ * {@code lastReadMessageId} được xem là đã đọc đối với user đó.
+ */
+@Entity
+@Data
+@Table(name = "room_read_state")
+public class RoomReadState {
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private Long lastReadMessageId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Column(name = "room_id")
+        private Long roomId;
+
+        @Column(name = "user_id")
+        private Long userId;
+    }
+}
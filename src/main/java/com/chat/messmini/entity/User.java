@@ -30,8 +30,6 @@ public class User {
     @Column(name = "avatar_url")
     private String avatarUrl;
 
-    private boolean online;
-
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Column(name = "roles")
@@ -41,6 +39,14 @@ public class User {
     @Column(name = "public_key", columnDefinition = "TEXT")
     private String publicKey;
 
+    // Cột cũ, trạng thái online nay nằm ở PresenceStore và không còn được đọc. Vẫn map để INSERT
+    // có giá trị cho cột NOT NULL trên các schema đã tạo trước đó (ddl-auto=update không xóa cột);
+    // bỏ field này cùng lúc chạy ALTER TABLE users DROP COLUMN online
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @Column(name = "online", nullable = false, columnDefinition = "bit default 0")
+    private boolean online;
+
     @PrePersist
     protected void onCreate() {
         if (displayName == null || displayName.isEmpty()) {
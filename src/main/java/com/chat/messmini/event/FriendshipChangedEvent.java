@@ -0,0 +1,15 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+/**
+ * Quan hệ bạn bè giữa hai user vừa được tạo ({@code friends = true}) hoặc bị xóa.
+ * Được publish trong transaction của {@code FriendshipService}; listener cập nhật cache
+ * nên dùng {@code @TransactionalEventListener} để chỉ thấy thay đổi đã commit.
+ */
+@Value
+public class FriendshipChangedEvent {
+    Long userId;
+    Long friendId;
+    boolean friends;
+}
@@ -0,0 +1,16 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+/**
+ * Một user chuyển từ 0 lên 1 session (online) hoặc từ 1 về 0 session (offline) trên node này.
+ * Các transition của cùng một user có thể được publish từ những luồng khác nhau, vì vậy
+ * listener cần trạng thái cuối cùng nên hỏi lại {@code PresenceRegistry.isOnline} (trên node này)
+ * hoặc {@code PresenceStore.isOnline} (trên toàn cụm).
+ */
+@Value
+public class PresenceChangedEvent {
+    Long userId;
+    String username;
+    boolean online;
+}
@@ -0,0 +1,15 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Các user vừa bị gỡ khỏi {@code PresenceStore} vì entry cuối cùng của họ hết TTL: node giữ
+ * session của họ đã chết mà không kịp báo offline. Khác {@link PresenceChangedEvent}, đây không
+ * phải transition của session trên node này; mỗi user chỉ được phát trên một node.
+ */
+@Value
+public class PresenceExpiredEvent {
+    List<Long> userIds;
+}
@@ -0,0 +1,13 @@
+package com.chat.messmini.event;
+
+import com.chat.messmini.dto.PersistedMessage;
+import lombok.Value;
+
+/**
+ * Một tin nhắn riêng đã được commit xuống DB bởi {@code MessageBatchWriter}.
+ * Được publish trên luồng write-behind, ngoài transaction.
+ */
+@Value
+public class PrivateMessagePersistedEvent {
+    PersistedMessage message;
+}
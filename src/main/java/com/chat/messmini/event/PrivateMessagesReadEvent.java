@@ -0,0 +1,13 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+/**
+ * {@code readerId} vừa đánh dấu đã đọc {@code count} tin nhắn do {@code peerId} gửi.
+ */
+@Value
+public class PrivateMessagesReadEvent {
+    Long readerId;
+    Long peerId;
+    int count;
+}
@@ -0,0 +1,8 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+@Value
+public class RoomDeletedEvent {
+    Long roomId;
+}
@@ -0,0 +1,17 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Các user {@code userIds} vừa vào ({@code member = true}) hoặc rời khỏi phòng {@code roomId}.
+ * Được publish trong transaction của {@code ChatRoomService}; listener cập nhật cache nên dùng
+ * {@code @TransactionalEventListener} để chỉ thấy thay đổi đã commit.
+ */
+@Value
+public class RoomMembershipChangedEvent {
+    Long roomId;
+    Set<Long> userIds;
+    boolean member;
+}
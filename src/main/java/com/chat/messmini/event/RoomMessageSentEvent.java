@@ -0,0 +1,20 @@
+package com.chat.messmini.event;
+
+import com.chat.messmini.util.ImmutableLongSet;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một tin nhắn mới trong phòng. {@code memberIds} là thành viên của phòng tại thời điểm gửi,
+ * lấy từ {@code RoomMembershipCache} khi kiểm tra quyền gửi nên listener không cần truy vấn lại.
+ */
+@Value
+public class RoomMessageSentEvent {
+    Long roomId;
+    Long messageId;
+    Long senderId;
+    String content;
+    LocalDateTime timestamp;
+    ImmutableLongSet memberIds;
+}
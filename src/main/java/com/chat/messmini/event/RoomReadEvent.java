@@ -0,0 +1,12 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+/**
+ * {@code userId} đã đọc hết tin nhắn trong phòng {@code roomId} (watermark đã được đẩy lên).
+ */
+@Value
+public class RoomReadEvent {
+    Long roomId;
+    Long userId;
+}
@@ -0,0 +1,17 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Hàng đợi outbound của một session vừa cạn sau khi đã bỏ các frame thuộc
+ * {@code coalescedDestinations}. Listener sở hữu các đích đó gửi lại trạng thái hiện tại cho
+ * đúng session này thay cho các frame đã bỏ.
+ */
+@Value
+public class SessionBacklogDrainedEvent {
+    String sessionId;
+    String username;
+    Set<String> coalescedDestinations;
+}
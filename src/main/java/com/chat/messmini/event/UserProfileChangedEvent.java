@@ -0,0 +1,15 @@
+package com.chat.messmini.event;
+
+import lombok.Value;
+
+/**
+ * Thông tin hiển thị của một user vừa được tạo hoặc thay đổi (đăng ký, cập nhật profile,
+ * avatar, public key). Mang sẵn giá trị mới để listener không phải đọc lại DB.
+ */
+@Value
+public class UserProfileChangedEvent {
+    Long userId;
+    String username;
+    String displayName;
+    String avatarUrl;
+}
@@ -10,4 +10,5 @@ public class ChatMessage {
     private String content;
     private String timestamp;
     private boolean isRead;
+    private boolean encrypted;
 } 
\ No newline at end of file
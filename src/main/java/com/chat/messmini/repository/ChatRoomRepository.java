@@ -12,6 +12,12 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     @Query("SELECT cr FROM ChatRoom cr JOIN cr.members m WHERE m = :user")
     List<ChatRoom> findRoomsByUser(@Param("user") User user);
 
+    @Query("SELECT cr.id FROM ChatRoom cr JOIN cr.members m WHERE m.id = :userId")
+    List<Long> findRoomIdsByMemberId(@Param("userId") Long userId);
+
+    @Query("SELECT m.id FROM ChatRoom cr JOIN cr.members m WHERE cr.id = :roomId")
+    List<Long> findMemberIds(@Param("roomId") Long roomId);
+
     @Query("SELECT cr FROM ChatRoom cr WHERE cr.creator = :user")
     List<ChatRoom> findRoomsCreatedByUser(@Param("user") User user);
 } 
\ No newline at end of file
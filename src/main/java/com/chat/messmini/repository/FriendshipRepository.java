@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -51,6 +52,18 @@ public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
     Optional<Friendship> findByUsers(@Param("user1") User user1, @Param("user2") User user2);
     
     List<Friendship> findBySenderIdOrReceiverId(Long userId1, Long userId2);
+
+    @Query("SELECT DISTINCT CASE WHEN f.sender.id = :userId THEN f.receiver.id ELSE f.sender.id END " +
+           "FROM Friendship f " +
+           "WHERE (f.sender.id = :userId OR f.receiver.id = :userId) " +
+           "AND f.status = 'ACCEPTED'")
+    List<Long> findFriendIds(@Param("userId") Long userId);
+
+    // Mỗi dòng: [senderId, receiverId] của các cạnh ACCEPTED chạm tới một trong các user
+    @Query("SELECT f.sender.id, f.receiver.id FROM Friendship f " +
+           "WHERE (f.sender.id IN :userIds OR f.receiver.id IN :userIds) " +
+           "AND f.status = 'ACCEPTED'")
+    List<Object[]> findAcceptedEdges(@Param("userIds") Collection<Long> userIds);
     
     @Modifying
     @Query("DELETE FROM Friendship f WHERE (f.sender.id = ?1 AND f.receiver.id = ?2) OR (f.sender.id = ?2 AND f.receiver.id = ?1)")
@@ -1,8 +1,11 @@
 package com.chat.messmini.repository;
 
+import com.chat.messmini.dto.ChatMessageView;
 import com.chat.messmini.entity.Message;
 import com.chat.messmini.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,14 +21,34 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT m FROM Message m WHERE m.receiver = :user AND m.isRead = false")
     List<Message> findUnreadMessages(@Param("user") User user);
 
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.receiver = :user AND m.isRead = false")
-    long countUnreadMessages(@Param("user") User user);
-
-    @Query("SELECT m FROM Message m WHERE " +
-           "(m.sender.id = :userId1 AND m.receiver.id = :userId2) OR " +
-           "(m.sender.id = :userId2 AND m.receiver.id = :userId1) " +
-           "ORDER BY m.timestamp ASC")
-    List<Message> findChatHistory(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+    // Mỗi dòng: [senderId, số tin chưa đọc] của các tin gửi tới userId
+    @Query("SELECT m.sender.id, COUNT(m) FROM Message m " +
+           "WHERE m.receiver.id = :userId AND m.isRead = false GROUP BY m.sender.id")
+    List<Object[]> countUnreadBySender(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.isRead = true " +
+           "WHERE m.receiver.id = :receiverId AND m.sender.id = :senderId AND m.isRead = false")
+    int markConversationAsRead(@Param("receiverId") Long receiverId, @Param("senderId") Long senderId);
+
+    // Lịch sử hội thoại được đọc theo từng chiều gửi rồi trộn ở ChatService: mỗi chiều là một
+    // range scan trên idx_messages_sender_receiver_id dừng sau đúng pageSize dòng, còn điều kiện
+    // OR của hai chiều khiến MySQL phải filesort toàn bộ hội thoại ở mỗi trang
+    @Query("SELECT new com.chat.messmini.dto.ChatMessageView(" +
+           "m.id, m.sender.id, m.receiver.id, m.content, m.timestamp, m.isRead, m.encrypted) " +
+           "FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+           "AND m.id < :beforeId " +
+           "ORDER BY m.id DESC")
+    List<ChatMessageView> findDirectedHistoryBefore(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId,
+                                                    @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT new com.chat.messmini.dto.ChatMessageView(" +
+           "m.id, m.sender.id, m.receiver.id, m.content, m.timestamp, m.isRead, m.encrypted) " +
+           "FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+           "AND m.id > :afterId " +
+           "ORDER BY m.id ASC")
+    List<ChatMessageView> findDirectedHistoryAfter(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId,
+                                                   @Param("afterId") Long afterId, Pageable pageable);
 
     List<Message> findByReceiverAndIsReadFalse(User receiver);
 }
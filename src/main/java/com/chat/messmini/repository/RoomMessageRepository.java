@@ -1,19 +1,62 @@
 package com.chat.messmini.repository;
 
+import com.chat.messmini.dto.RoomMessageView;
 import com.chat.messmini.entity.RoomMessage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface RoomMessageRepository extends JpaRepository<RoomMessage, Long> {
-    @Query("SELECT rm FROM RoomMessage rm WHERE rm.room.id = :roomId ORDER BY rm.timestamp ASC")
-    List<RoomMessage> findMessagesByRoomId(@Param("roomId") Long roomId);
+    @Query("SELECT new com.chat.messmini.dto.RoomMessageView(rm.id, s.id, s.displayName, rm.content, rm.timestamp) " +
+           "FROM RoomMessage rm JOIN rm.sender s " +
+           "WHERE rm.room.id = :roomId " +
+           "ORDER BY rm.timestamp DESC, rm.id DESC")
+    List<RoomMessageView> findLatestRoomHistory(@Param("roomId") Long roomId, Pageable pageable);
 
-    @Query("SELECT COUNT(rm) FROM RoomMessage rm WHERE rm.room.id = :roomId AND rm.isRead = false AND rm.sender.id != :userId")
-    Long countUnreadMessages(@Param("roomId") Long roomId, @Param("userId") Long userId);
+    @Query("SELECT new com.chat.messmini.dto.RoomMessageView(rm.id, s.id, s.displayName, rm.content, rm.timestamp) " +
+           "FROM RoomMessage rm JOIN rm.sender s " +
+           "WHERE rm.room.id = :roomId " +
+           "AND (rm.timestamp < :timestamp OR (rm.timestamp = :timestamp AND rm.id < :id)) " +
+           "ORDER BY rm.timestamp DESC, rm.id DESC")
+    List<RoomMessageView> findRoomHistoryBefore(@Param("roomId") Long roomId, @Param("timestamp") LocalDateTime timestamp,
+                                                @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new com.chat.messmini.dto.RoomMessageView(rm.id, s.id, s.displayName, rm.content, rm.timestamp) " +
+           "FROM RoomMessage rm JOIN rm.sender s " +
+           "WHERE rm.room.id = :roomId " +
+           "AND (rm.timestamp > :timestamp OR (rm.timestamp = :timestamp AND rm.id > :id)) " +
+           "ORDER BY rm.timestamp ASC, rm.id ASC")
+    List<RoomMessageView> findRoomHistoryAfter(@Param("roomId") Long roomId, @Param("timestamp") LocalDateTime timestamp,
+                                               @Param("id") Long id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.chat.messmini.dto.RoomMessageView(rm.id, s.id, s.displayName, rm.content, rm.timestamp) " +
+           "FROM RoomMessage rm JOIN rm.sender s " +
+           "WHERE rm.room.id = :roomId " +
+           "AND (rm.timestamp > :timestamp OR (rm.timestamp = :timestamp AND rm.id > :id)) " +
+           "ORDER BY rm.timestamp ASC, rm.id ASC")
+    Stream<RoomMessageView> streamRoomHistoryAfter(@Param("roomId") Long roomId, @Param("timestamp") LocalDateTime timestamp,
+                                                   @Param("id") Long id);
+
+    @Query("SELECT MAX(rm.id) FROM RoomMessage rm WHERE rm.room.id = :roomId")
+    Long findLatestMessageId(@Param("roomId") Long roomId);
+
+    // Mỗi dòng: [roomId, số tin chưa đọc] cho mọi phòng userId là thành viên, tính theo watermark
+    @Query("SELECT rm.room.id, COUNT(rm) FROM RoomMessage rm JOIN rm.room r JOIN r.members m " +
+           "LEFT JOIN RoomReadState rs ON rs.id.roomId = r.id AND rs.id.userId = :userId " +
+           "WHERE m.id = :userId AND rm.sender.id <> :userId " +
+           "AND rm.id > COALESCE(rs.lastReadMessageId, 0) " +
+           "GROUP BY rm.room.id")
+    List<Object[]> countUnreadByRoom(@Param("userId") Long userId);
 
     @Modifying
     @Query("DELETE FROM RoomMessage rm WHERE rm.room.id = :roomId")
@@ -0,0 +1,33 @@
+package com.chat.messmini.repository;
+
+import com.chat.messmini.entity.RoomReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface RoomReadStateRepository extends JpaRepository<RoomReadState, RoomReadState.Key> {
+
+    @Query("SELECT s.lastReadMessageId FROM RoomReadState s WHERE s.id.roomId = :roomId AND s.id.userId = :userId")
+    Optional<Long> findWatermark(@Param("roomId") Long roomId, @Param("userId") Long userId);
+
+    /**
+     * Chỉ đẩy watermark lên, không bao giờ lùi lại. Câu lệnh native {@code ON DUPLICATE KEY UPDATE}
+     * chạy trên MySQL và trên H2 ở chế độ MySQL (profile embedded, test); đổi sang DB khác thì
+     * phải viết lại câu upsert này.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO room_read_state (room_id, user_id, last_read_message_id, updated_at) " +
+                   "VALUES (:roomId, :userId, :messageId, CURRENT_TIMESTAMP) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "last_read_message_id = GREATEST(last_read_message_id, :messageId), " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int upsertWatermark(@Param("roomId") Long roomId, @Param("userId") Long userId, @Param("messageId") Long messageId);
+
+    @Modifying
+    @Query("DELETE FROM RoomReadState s WHERE s.id.roomId = :roomId")
+    void deleteByRoomId(@Param("roomId") Long roomId);
+}
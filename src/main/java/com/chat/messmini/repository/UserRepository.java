@@ -1,16 +1,48 @@
 package com.chat.messmini.repository;
 
+import com.chat.messmini.dto.UserSnapshot;
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
-    List<User> findByUsernameContainingOrDisplayNameContaining(String username, String displayName);
-    List<User> findByOnlineTrue();
+
+    @Query("SELECT new com.chat.messmini.dto.UserSummary(u.id, u.username, u.displayName, u.avatarUrl) " +
+           "FROM User u WHERE u.username LIKE %:query% OR u.displayName LIKE %:query% ORDER BY u.id")
+    List<UserSummary> searchSummaries(@Param("query") String query, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.chat.messmini.dto.UserSummary(u.id, u.username, u.displayName, u.avatarUrl) " +
+           "FROM User u ORDER BY u.id")
+    Stream<UserSummary> streamAllSummaries();
+
+    @Query("SELECT new com.chat.messmini.dto.UserSummary(u.id, u.username, u.displayName, u.avatarUrl) " +
+           "FROM User u WHERE u.id IN :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.chat.messmini.dto.UserSnapshot(u.id, u.username, u.displayName, u.avatarUrl, u.publicKey) " +
+           "FROM User u WHERE u.id = :id")
+    Optional<UserSnapshot> findSnapshotById(@Param("id") Long id);
+
+    @Query("SELECT new com.chat.messmini.dto.UserSnapshot(u.id, u.username, u.displayName, u.avatarUrl, u.publicKey) " +
+           "FROM User u WHERE u.id IN :ids")
+    List<UserSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<? extends Long> ids);
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
 }
@@ -1,26 +1,49 @@
 package com.chat.messmini.service;
 
+import com.chat.messmini.dto.CursorPage;
+import com.chat.messmini.dto.RoomMessageView;
+import com.chat.messmini.dto.UserSnapshot;
 import com.chat.messmini.entity.ChatRoom;
 import com.chat.messmini.entity.RoomMessage;
 import com.chat.messmini.entity.User;
+import com.chat.messmini.event.RoomDeletedEvent;
+import com.chat.messmini.event.RoomMembershipChangedEvent;
+import com.chat.messmini.event.RoomMessageSentEvent;
+import com.chat.messmini.event.RoomReadEvent;
 import com.chat.messmini.repository.ChatRoomRepository;
 import com.chat.messmini.repository.RoomMessageRepository;
+import com.chat.messmini.repository.RoomReadStateRepository;
 import com.chat.messmini.repository.UserRepository;
+import com.chat.messmini.util.ImmutableLongSet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatRoomService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final ChatRoomRepository chatRoomRepository;
     private final RoomMessageRepository roomMessageRepository;
+    private final RoomReadStateRepository roomReadStateRepository;
     private final UserRepository userRepository;
+    private final RoomMembershipCache roomMembershipCache;
+    private final UserSnapshotCache userSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public ChatRoom createRoom(String name, String description, Long creatorId, Set<Long> memberIds) {
@@ -41,7 +64,9 @@ public class ChatRoomService {
             room.getMembers().add(member);
         });
 
-        return chatRoomRepository.save(room);
+        ChatRoom saved = chatRoomRepository.save(room);
+        eventPublisher.publishEvent(new RoomMembershipChangedEvent(saved.getId(), Set.copyOf(allMemberIds), true));
+        return saved;
     }
 
     @Transactional
@@ -52,7 +77,9 @@ public class ChatRoomService {
             .orElseThrow(() -> new RuntimeException("User not found"));
 
         room.getMembers().add(user);
-        return chatRoomRepository.save(room);
+        ChatRoom saved = chatRoomRepository.save(room);
+        eventPublisher.publishEvent(new RoomMembershipChangedEvent(roomId, Set.of(userId), true));
+        return saved;
     }
 
     @Transactional
@@ -63,31 +90,79 @@ public class ChatRoomService {
             .orElseThrow(() -> new RuntimeException("User not found"));
 
         room.getMembers().remove(user);
-        return chatRoomRepository.save(room);
+        ChatRoom saved = chatRoomRepository.save(room);
+        eventPublisher.publishEvent(new RoomMembershipChangedEvent(roomId, Set.of(userId), false));
+        return saved;
     }
 
+    /**
+     * Quyền gửi và danh sách người nhận lấy từ {@link RoomMembershipCache}; phòng và người gửi
+     * chỉ được gắn vào tin nhắn dưới dạng reference nên không load {@code ChatRoom}, tập
+     * {@code members} hay entity {@code User} nào.
+     */
     @Transactional
-    public RoomMessage sendMessage(Long roomId, Long senderId, String content) {
-        ChatRoom room = chatRoomRepository.findById(roomId)
-            .orElseThrow(() -> new RuntimeException("Room not found"));
-        User sender = userRepository.findById(senderId)
-            .orElseThrow(() -> new RuntimeException("Sender not found"));
-
-        // Kiểm tra xem người gửi có phải là thành viên của phòng không
-        if (!room.getMembers().contains(sender)) {
+    public RoomMessageView sendMessage(Long roomId, Long senderId, String content) {
+        ImmutableLongSet memberIds = roomMembershipCache.membersOf(roomId);
+        if (!memberIds.contains(senderId)) {
             throw new RuntimeException("User is not a member of this room");
         }
+        UserSnapshot sender = userSnapshotCache.findById(senderId)
+            .orElseThrow(() -> new RuntimeException("Sender not found"));
 
         RoomMessage message = new RoomMessage();
-        message.setRoom(room);
-        message.setSender(sender);
+        message.setRoom(chatRoomRepository.getReferenceById(roomId));
+        message.setSender(userRepository.getReferenceById(senderId));
         message.setContent(content);
 
-        return roomMessageRepository.save(message);
+        RoomMessage saved = roomMessageRepository.save(message);
+        eventPublisher.publishEvent(new RoomMessageSentEvent(
+            roomId, saved.getId(), senderId, saved.getContent(), saved.getTimestamp(), memberIds));
+        return new RoomMessageView(
+            saved.getId(), senderId, sender.getDisplayName(), saved.getContent(), saved.getTimestamp());
     }
 
-    public List<RoomMessage> getRoomMessages(Long roomId) {
-        return roomMessageRepository.findMessagesByRoomId(roomId);
+    @Transactional(readOnly = true)
+    public CursorPage<RoomMessageView> getRoomMessages(Long roomId, String before, String after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE_SIZE);
+
+        if (after != null) {
+            // Các tin nhắn mới hơn cursor, tăng dần theo (timestamp, id)
+            CursorCodec.Keyset keyset = CursorCodec.decodeKeyset(after);
+            List<RoomMessageView> messages = roomMessageRepository.findRoomHistoryAfter(
+                roomId, keyset.timestamp(), keyset.id(), PageRequest.of(0, pageSize));
+            String nextCursor = messages.isEmpty() ? after : cursorOf(messages.get(messages.size() - 1));
+            return new CursorPage<>(messages, nextCursor);
+        }
+
+        List<RoomMessageView> messages;
+        if (before != null) {
+            CursorCodec.Keyset keyset = CursorCodec.decodeKeyset(before);
+            messages = roomMessageRepository.findRoomHistoryBefore(
+                roomId, keyset.timestamp(), keyset.id(), PageRequest.of(0, pageSize));
+        } else {
+            messages = roomMessageRepository.findLatestRoomHistory(roomId, PageRequest.of(0, pageSize));
+        }
+        messages = new ArrayList<>(messages);
+        Collections.reverse(messages);
+        String nextCursor = messages.size() == pageSize ? cursorOf(messages.get(0)) : null;
+        return new CursorPage<>(messages, nextCursor);
+    }
+
+    /**
+     * Đẩy toàn bộ lịch sử phòng sau vị trí {@code after} cho {@code sink} trong lúc còn đang đọc,
+     * dùng cho các lần backfill lớn mà không giữ cả kết quả trong bộ nhớ.
+     */
+    @Transactional(readOnly = true)
+    public void streamRoomMessages(Long roomId, CursorCodec.Keyset after, Consumer<RoomMessageView> sink) {
+        LocalDateTime timestamp = after != null ? after.timestamp() : HISTORY_START;
+        long id = after != null ? after.id() : 0L;
+        try (Stream<RoomMessageView> messages = roomMessageRepository.streamRoomHistoryAfter(roomId, timestamp, id)) {
+            messages.forEach(sink);
+        }
+    }
+
+    private static String cursorOf(RoomMessageView message) {
+        return CursorCodec.encodeKeyset(message.getTimestamp(), message.getId());
     }
 
     public List<ChatRoom> getUserRooms(Long userId) {
@@ -100,14 +175,13 @@ public class ChatRoomService {
 
     @Transactional
     public void markMessagesAsRead(Long roomId, Long userId) {
-        List<RoomMessage> unreadMessages = roomMessageRepository.findMessagesByRoomId(roomId).stream()
-            .filter(message -> !message.isRead() && !message.getSender().getId().equals(userId))
-            .toList();
-
-        unreadMessages.forEach(message -> {
-            message.setRead(true);
-            roomMessageRepository.save(message);
-        });
+        // Một upsert watermark, không phụ thuộc số tin nhắn trong phòng
+        Long latestMessageId = roomMessageRepository.findLatestMessageId(roomId);
+        if (latestMessageId == null) {
+            return;
+        }
+        roomReadStateRepository.upsertWatermark(roomId, userId, latestMessageId);
+        eventPublisher.publishEvent(new RoomReadEvent(roomId, userId));
     }
 
     @Transactional
@@ -120,11 +194,13 @@ public class ChatRoomService {
             throw new IllegalArgumentException("Only room creator can delete the room");
         }
 
-        // Xóa tất cả tin nhắn trong phòng
+        // Xóa tất cả tin nhắn và trạng thái đọc trong phòng
         roomMessageRepository.deleteByRoomId(roomId);
+        roomReadStateRepository.deleteByRoomId(roomId);
 
         // Xóa phòng
         chatRoomRepository.delete(room);
+        eventPublisher.publishEvent(new RoomDeletedEvent(roomId));
         log.info("Room {} deleted by user {}", roomId, userId);
     }
 } 
\ No newline at end of file
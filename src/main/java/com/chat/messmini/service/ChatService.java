@@ -1,45 +1,69 @@
 package com.chat.messmini.service;
 
+import com.chat.messmini.dto.ChatMessageView;
+import com.chat.messmini.dto.CursorPage;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.dto.UserSnapshot;
 import com.chat.messmini.entity.Message;
-import com.chat.messmini.entity.User;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.event.PrivateMessagesReadEvent;
 import com.chat.messmini.model.ChatMessage;
 import com.chat.messmini.repository.MessageRepository;
 import com.chat.messmini.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatService {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
-    private final Map<Long, Set<String>> onlineUsers = new ConcurrentHashMap<>(); // Map userId to set of sessionIds
+    private final UserSnapshotCache userSnapshotCache;
+    private final MessageBatchWriter messageBatchWriter;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Message saveMessage(ChatMessage chatMessage) {
         log.info("Saving message: {}", chatMessage);
         try {
-            User sender = userRepository.findById(chatMessage.getSenderId())
+            UserSnapshot sender = userSnapshotCache.findById(chatMessage.getSenderId())
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
-            User receiver = userRepository.findById(chatMessage.getReceiverId())
+            UserSnapshot receiver = userSnapshotCache.findById(chatMessage.getReceiverId())
                 .orElseThrow(() -> new RuntimeException("Receiver not found"));
 
+            // Chỉ cần khóa ngoại: dùng reference thay vì load cả hai entity User
             Message message = new Message();
-            message.setSender(sender);
-            message.setReceiver(receiver);
+            message.setSender(userRepository.getReferenceById(sender.getId()));
+            message.setReceiver(userRepository.getReferenceById(receiver.getId()));
             message.setContent(chatMessage.getContent());
             message.setTimestamp(LocalDateTime.now());
             message.setRead(false);
+            message.setEncrypted(chatMessage.isEncrypted());
 
             Message savedMessage = messageRepository.save(message);
+            eventPublisher.publishEvent(new PrivateMessagePersistedEvent(new PersistedMessage(
+                savedMessage.getId(),
+                sender.getId(),
+                sender.getUsername(),
+                receiver.getId(),
+                receiver.getUsername(),
+                savedMessage.getContent(),
+                savedMessage.getTimestamp(),
+                false,
+                savedMessage.isEncrypted()
+            )));
             log.info("Message saved successfully with ID: {}", savedMessage.getId());
             return savedMessage;
         } catch (Exception e) {
@@ -48,60 +72,65 @@ public class ChatService {
         }
     }
 
-    public List<ChatMessage> getChatHistory(Long userId1, Long userId2) {
-        log.info("Getting chat history between users: {} and {}", userId1, userId2);
-        try {
-            List<Message> messages = messageRepository.findChatHistory(userId1, userId2);
-            List<ChatMessage> chatMessages = new ArrayList<>();
-            
-            for (Message message : messages) {
-                ChatMessage chatMessage = new ChatMessage();
-                chatMessage.setId(message.getId());
-                chatMessage.setSenderId(message.getSender().getId());
-                chatMessage.setReceiverId(message.getReceiver().getId());
-                chatMessage.setContent(message.getContent());
-                chatMessage.setTimestamp(message.getTimestamp().toString());
-                chatMessage.setRead(message.isRead());
-                chatMessages.add(chatMessage);
-            }
-            
-            log.info("Found {} messages in chat history", chatMessages.size());
-            return chatMessages;
-        } catch (Exception e) {
-            log.error("Error getting chat history: {}", e.getMessage(), e);
-            throw e;
-        }
+    public CompletableFuture<PersistedMessage> saveMessageAsync(ChatMessage chatMessage) {
+        log.debug("Queueing message from {} to {}", chatMessage.getSenderId(), chatMessage.getReceiverId());
+        return messageBatchWriter.submit(chatMessage);
     }
 
-    public void userConnected(Long userId) {
-        log.info("User connected: userId={}", userId);
-        onlineUsers.computeIfAbsent(userId, k -> new HashSet<>());
-        log.info("Current online users: {}", onlineUsers);
-    }
+    @Transactional(readOnly = true)
+    public CursorPage<ChatMessageView> getChatHistory(Long userId1, Long userId2, String before, String after, int limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of before and after may be given");
+        }
+        int pageSize = Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE_SIZE);
+        log.info("Getting chat history between users: {} and {} (before={}, after={}, limit={})",
+            userId1, userId2, before, after, pageSize);
+        PageRequest page = PageRequest.of(0, pageSize);
 
-    public void userDisconnected(Long userId) {
-        log.info("User disconnected: userId={}", userId);
-        onlineUsers.remove(userId);
-        log.info("Current online users: {}", onlineUsers);
+        if (after != null) {
+            // Các tin nhắn mới hơn cursor, tăng dần theo id
+            long afterId = CursorCodec.decodeId(after);
+            List<ChatMessageView> messages = mergeHistory(
+                messageRepository.findDirectedHistoryAfter(userId1, userId2, afterId, page),
+                messageRepository.findDirectedHistoryAfter(userId2, userId1, afterId, page),
+                Comparator.comparing(ChatMessageView::getId), pageSize);
+            String nextCursor = messages.isEmpty()
+                ? after
+                : CursorCodec.encodeId(messages.get(messages.size() - 1).getId());
+            return new CursorPage<>(messages, nextCursor);
+        }
+
+        // N tin nhắn mới nhất trước cursor, trả về theo thứ tự tăng dần để hiển thị
+        long beforeId = before != null ? CursorCodec.decodeId(before) : Long.MAX_VALUE;
+        List<ChatMessageView> messages = mergeHistory(
+            messageRepository.findDirectedHistoryBefore(userId1, userId2, beforeId, page),
+            messageRepository.findDirectedHistoryBefore(userId2, userId1, beforeId, page),
+            Comparator.comparing(ChatMessageView::getId).reversed(), pageSize);
+        Collections.reverse(messages);
+        String nextCursor = messages.size() == pageSize
+            ? CursorCodec.encodeId(messages.get(0).getId())
+            : null;
+        log.info("Found {} messages in chat history", messages.size());
+        return new CursorPage<>(messages, nextCursor);
     }
 
-    public List<Map<String, Object>> getOnlineUsers() {
-        log.info("Getting online users list");
-        List<Map<String, Object>> onlineUsersList = new ArrayList<>();
-        
-        for (Long userId : onlineUsers.keySet()) {
-            userRepository.findById(userId).ifPresent(user -> {
-                Map<String, Object> userInfo = new HashMap<>();
-                userInfo.put("id", user.getId());
-                userInfo.put("username", user.getUsername());
-                userInfo.put("displayName", user.getDisplayName());
-                userInfo.put("online", true);
-                onlineUsersList.add(userInfo);
-            });
+    /**
+     * Trộn hai chiều của hội thoại (mỗi chiều đã sắp theo {@code order}) và giữ {@code limit}
+     * phần tử đầu. Tin trùng id (tự nhắn cho mình, hai chiều là một) chỉ được giữ một lần.
+     */
+    static List<ChatMessageView> mergeHistory(List<ChatMessageView> sent, List<ChatMessageView> received,
+                                              Comparator<ChatMessageView> order, int limit) {
+        List<ChatMessageView> merged = new ArrayList<>(Math.min(limit, sent.size() + received.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < sent.size() || j < received.size())) {
+            int compare = i >= sent.size() ? 1 : j >= received.size() ? -1 : order.compare(sent.get(i), received.get(j));
+            if (compare == 0) {
+                j++;
+            }
+            merged.add(compare <= 0 ? sent.get(i++) : received.get(j++));
         }
-        
-        log.info("Found {} online users", onlineUsersList.size());
-        return onlineUsersList;
+        return merged;
     }
 
     @Transactional
@@ -110,12 +139,28 @@ public class ChatService {
         try {
             Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
+            if (message.isRead()) {
+                return;
+            }
             message.setRead(true);
             messageRepository.save(message);
+            eventPublisher.publishEvent(new PrivateMessagesReadEvent(
+                message.getReceiver().getId(), message.getSender().getId(), 1));
             log.info("Message marked as read successfully");
         } catch (Exception e) {
             log.error("Error marking message as read: {}", e.getMessage(), e);
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    @Transactional
+    public int markConversationAsRead(Long readerId, Long peerId) {
+        // Một câu UPDATE cho cả cuộc trò chuyện thay vì đánh dấu từng tin
+        int updated = messageRepository.markConversationAsRead(readerId, peerId);
+        if (updated > 0) {
+            eventPublisher.publishEvent(new PrivateMessagesReadEvent(readerId, peerId, updated));
+        }
+        log.debug("Marked {} messages from {} as read for {}", updated, peerId, readerId);
+        return updated;
+    }
+}
@@ -0,0 +1,33 @@
+package com.chat.messmini.service;
+
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Nhận dạng ciphertext end-to-end ở phía server, thay cho cờ {@code encrypted} do client gửi.
+ * <p>
+ * Client mã hóa tin nhắn riêng bằng RSA-OAEP với public key của người nhận và gửi kết quả dạng
+ * Base64, nên ciphertext luôn giải mã Base64 được thành đúng một khối dài bằng modulus của khóa.
+ * Nội dung có dạng đó được coi là đã mã hóa dù client có đánh dấu hay không, nên ciphertext không
+ * bao giờ lọt vào index tìm kiếm; ngược lại văn bản thường bị đánh dấu nhầm vẫn được index.
+ */
+public final class EncryptedContent {
+
+    // Khối RSA-OAEP của khóa 2048, 3072 và 4096 bit
+    private static final Set<Integer> RSA_BLOCK_BYTES = Set.of(256, 384, 512);
+
+    private EncryptedContent() {
+    }
+
+    public static boolean isCiphertext(String content) {
+        // Base64 có padding của N byte dài 4 * ceil(N / 3) ký tự: loại nhanh trước khi giải mã
+        if (content == null || content.length() % 4 != 0 || content.length() > 4 * 512 / 3 + 4) {
+            return false;
+        }
+        try {
+            return RSA_BLOCK_BYTES.contains(Base64.getDecoder().decode(content).length);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
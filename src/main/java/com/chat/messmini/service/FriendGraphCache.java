@@ -0,0 +1,144 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.FriendCacheProperties;
+import com.chat.messmini.event.FriendshipChangedEvent;
+import com.chat.messmini.repository.FriendshipRepository;
+import com.chat.messmini.util.ImmutableLongSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Danh sách kề của đồ thị bạn bè: user id → tập id bạn bè (đã ACCEPTED) dạng primitive.
+ * <p>
+ * Tập của một user được nạp từ DB ở lần đầu cần đến bằng một truy vấn chỉ lấy id, sau đó được
+ * cập nhật tại chỗ bởi {@link FriendshipChangedEvent} sau khi transaction commit. Một bộ đếm
+ * thế hệ ngăn kết quả nạp song song với một thay đổi (có thể đã cũ) bị ghi vào cache.
+ * <p>
+ * Cache giới hạn theo số user và bỏ user lâu không được đọc ({@code messmini.cache.friends.*});
+ * user bị bỏ chỉ tốn một truy vấn nạp lại. Số liệu xuất qua Micrometer với
+ * {@code cache="friends.adjacency"}.
+ */
+@Component
+@Slf4j
+public class FriendGraphCache {
+
+    private static final int PRELOAD_BATCH_SIZE = 500;
+
+    private final FriendshipRepository friendshipRepository;
+
+    private final Cache<Long, ImmutableLongSet> cache;
+    // View ConcurrentMap của cache Caffeine: putIfAbsent/remove/computeIfPresent giữ nguyên ngữ nghĩa
+    private final ConcurrentMap<Long, ImmutableLongSet> adjacency;
+    private final AtomicLong generation = new AtomicLong();
+
+    public FriendGraphCache(FriendshipRepository friendshipRepository,
+                            FriendCacheProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.friendshipRepository = friendshipRepository;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(properties.getExpireAfterAccess())
+            .recordStats()
+            .<Long, ImmutableLongSet>build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "friends.adjacency");
+        this.adjacency = cache.asMap();
+    }
+
+    public ImmutableLongSet friendsOf(Long userId) {
+        // getIfPresent (không phải asMap().get) để hit/miss được tính vào số liệu cache
+        ImmutableLongSet cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = generation.get();
+        ImmutableLongSet loaded = ImmutableLongSet.of(friendshipRepository.findFriendIds(userId));
+        ImmutableLongSet raced = adjacency.putIfAbsent(userId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        if (generation.get() != loadGeneration) {
+            // Có thay đổi quan hệ trong lúc nạp, kết quả có thể đã cũ: bỏ khỏi cache
+            adjacency.remove(userId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Nạp trước tập bạn bè của nhiều user bằng các truy vấn theo lô, tránh một truy vấn cho mỗi
+     * user khi cần duyệt bạn của bạn.
+     */
+    public void preload(ImmutableLongSet userIds) {
+        List<Long> missing = new ArrayList<>();
+        userIds.forEach(userId -> {
+            if (!adjacency.containsKey(userId)) {
+                missing.add(userId);
+            }
+        });
+        for (int from = 0; from < missing.size(); from += PRELOAD_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + PRELOAD_BATCH_SIZE, missing.size()));
+            long loadGeneration = generation.get();
+            Map<Long, List<Long>> friendIds = new HashMap<>();
+            batch.forEach(userId -> friendIds.put(userId, new ArrayList<>()));
+            for (Object[] edge : friendshipRepository.findAcceptedEdges(batch)) {
+                Long senderId = (Long) edge[0];
+                Long receiverId = (Long) edge[1];
+                List<Long> ofSender = friendIds.get(senderId);
+                if (ofSender != null) {
+                    ofSender.add(receiverId);
+                }
+                List<Long> ofReceiver = friendIds.get(receiverId);
+                if (ofReceiver != null) {
+                    ofReceiver.add(senderId);
+                }
+            }
+            friendIds.forEach((userId, ids) -> adjacency.putIfAbsent(userId, ImmutableLongSet.of(ids)));
+            if (generation.get() != loadGeneration) {
+                batch.forEach(adjacency::remove);
+            }
+        }
+    }
+
+    public boolean areFriends(Long userId1, Long userId2) {
+        return friendsOf(userId1).contains(userId2);
+    }
+
+    public void evict(Long userId) {
+        adjacency.remove(userId);
+    }
+
+    public long cachedUserCount() {
+        // Eviction của Caffeine chạy bất đồng bộ: dọn trước để số đếm không vượt giới hạn
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        generation.incrementAndGet();
+        long userId = event.getUserId();
+        long friendId = event.getFriendId();
+        if (event.isFriends()) {
+            adjacency.computeIfPresent(userId, (id, friends) -> friends.with(friendId));
+            adjacency.computeIfPresent(friendId, (id, friends) -> friends.with(userId));
+        } else {
+            adjacency.computeIfPresent(userId, (id, friends) -> friends.without(friendId));
+            adjacency.computeIfPresent(friendId, (id, friends) -> friends.without(userId));
+        }
+        log.debug("Friend graph updated: {} and {} friends={}", userId, friendId, event.isFriends());
+    }
+}
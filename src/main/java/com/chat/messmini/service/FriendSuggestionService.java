@@ -0,0 +1,257 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.SuggestionCacheProperties;
+import com.chat.messmini.dto.FriendSuggestion;
+import com.chat.messmini.dto.UserSummary;
+import com.chat.messmini.event.FriendshipChangedEvent;
+import com.chat.messmini.event.PresenceChangedEvent;
+import com.chat.messmini.util.ImmutableLongSet;
+import com.chat.messmini.util.LongIntCounter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "Những người bạn có thể biết": xếp hạng bạn của bạn theo số bạn chung.
+ * <p>
+ * Với mỗi user đã yêu cầu gợi ý, service giữ một {@link LongIntCounter} ứng viên → số bạn chung,
+ * dựng một lần từ các tập kề trong {@link FriendGraphCache}. Sau đó mỗi
+ * {@link FriendshipChangedEvent} chỉ cộng/trừ các ứng viên bị ảnh hưởng bởi cạnh vừa thay đổi
+ * thay vì dựng lại. Bộ đếm nằm trong cache Caffeine giới hạn theo số user và bỏ sau một thời gian
+ * không được xem ({@code messmini.cache.suggestions.*}), ngoài ra bị bỏ ngay khi user offline;
+ * bộ nhớ vì vậy tỉ lệ với số user vừa xem gợi ý chứ không với số user từng xem. Các tập kề nạp
+ * trước khi dựng nằm trong cache có giới hạn của {@link FriendGraphCache}.
+ */
+@Service
+@Slf4j
+public class FriendSuggestionService {
+
+    private static final int MAX_SUGGESTIONS = 50;
+
+    private final FriendGraphCache friendGraphCache;
+    private final UserService userService;
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceStore presenceStore;
+
+    private final Cache<Long, LongIntCounter> cache;
+    // View ConcurrentMap của cache Caffeine, cùng cách dùng với FriendGraphCache
+    private final ConcurrentMap<Long, LongIntCounter> candidates;
+    private final AtomicLong generation = new AtomicLong();
+
+    public FriendSuggestionService(FriendGraphCache friendGraphCache,
+                                   UserService userService,
+                                   PresenceRegistry presenceRegistry,
+                                   PresenceStore presenceStore,
+                                   SuggestionCacheProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.friendGraphCache = friendGraphCache;
+        this.userService = userService;
+        this.presenceRegistry = presenceRegistry;
+        this.presenceStore = presenceStore;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(properties.getExpireAfterAccess())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "friends.suggestions");
+        this.candidates = cache.asMap();
+    }
+
+    @Transactional(readOnly = true)
+    public List<FriendSuggestion> getSuggestions(Long userId, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+        LongIntCounter counter = candidatesOf(userId);
+
+        long[] topIds = new long[size];
+        int[] topCounts = new int[size];
+        int found;
+        synchronized (counter) {
+            found = selectTop(counter, topIds, topCounts);
+        }
+        if (found == 0) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            ids.add(topIds[i]);
+        }
+        Map<Long, UserSummary> summaries = new HashMap<>();
+        userService.getSummaries(ids).forEach(summary -> summaries.put(summary.getId(), summary));
+        ImmutableLongSet online = presenceStore.onlineAmong(ImmutableLongSet.of(Arrays.copyOf(topIds, found)));
+
+        List<FriendSuggestion> suggestions = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            UserSummary summary = summaries.get(topIds[i]);
+            if (summary != null) {
+                suggestions.add(new FriendSuggestion(
+                    summary.getId(),
+                    summary.getUsername(),
+                    summary.getDisplayName(),
+                    summary.getAvatarUrl(),
+                    online.contains(summary.getId()),
+                    topCounts[i]
+                ));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Chạy sau {@link FriendGraphCache} nên các tập kề đọc ở đây đã phản ánh cạnh vừa thay đổi.
+     */
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 10)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        generation.incrementAndGet();
+        if (candidates.isEmpty()) {
+            return;
+        }
+        long a = event.getUserId();
+        long b = event.getFriendId();
+        ImmutableLongSet friendsOfA = friendGraphCache.friendsOf(a);
+        ImmutableLongSet friendsOfB = friendGraphCache.friendsOf(b);
+
+        updateEndpoint(a, b, friendsOfA, friendsOfB, event.isFriends());
+        updateEndpoint(b, a, friendsOfB, friendsOfA, event.isFriends());
+        updateNeighbours(a, b, friendsOfA, friendsOfB, event.isFriends());
+        updateNeighbours(b, a, friendsOfB, friendsOfA, event.isFriends());
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        if (!event.isOnline() && !presenceRegistry.isOnline(event.getUserId())) {
+            candidates.remove(event.getUserId());
+        }
+    }
+
+    /**
+     * Ứng viên của {@code self} khi cạnh self–other thay đổi: bạn của other (không phải bạn của
+     * self) được thêm/bớt một bạn chung; bản thân other thôi là ứng viên khi hai người kết bạn,
+     * và trở lại với số bạn chung tính bằng phép giao khi hủy kết bạn.
+     */
+    private void updateEndpoint(long self, long other, ImmutableLongSet friendsOfSelf,
+                                ImmutableLongSet friendsOfOther, boolean friends) {
+        LongIntCounter counter = candidates.get(self);
+        if (counter == null) {
+            return;
+        }
+        int delta = friends ? 1 : -1;
+        synchronized (counter) {
+            for (int i = 0; i < friendsOfOther.size(); i++) {
+                long candidate = friendsOfOther.get(i);
+                if (candidate != self && !friendsOfSelf.contains(candidate)) {
+                    counter.add(candidate, delta);
+                }
+            }
+            if (friends) {
+                counter.remove(other);
+            } else {
+                counter.set(other, friendsOfSelf.intersectionSize(friendsOfOther));
+            }
+        }
+    }
+
+    /**
+     * Mỗi bạn của {@code self} (đang có bộ đếm) được thêm/bớt self làm bạn chung với {@code other}.
+     */
+    private void updateNeighbours(long self, long other, ImmutableLongSet friendsOfSelf,
+                                  ImmutableLongSet friendsOfOther, boolean friends) {
+        int delta = friends ? 1 : -1;
+        for (int i = 0; i < friendsOfSelf.size(); i++) {
+            long neighbour = friendsOfSelf.get(i);
+            if (neighbour == other || friendsOfOther.contains(neighbour)) {
+                continue;
+            }
+            LongIntCounter counter = candidates.get(neighbour);
+            if (counter != null) {
+                synchronized (counter) {
+                    counter.add(other, delta);
+                }
+            }
+        }
+    }
+
+    private LongIntCounter candidatesOf(Long userId) {
+        LongIntCounter cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long buildGeneration = generation.get();
+        LongIntCounter built = build(userId);
+        LongIntCounter raced = candidates.putIfAbsent(userId, built);
+        if (raced != null) {
+            return raced;
+        }
+        if (generation.get() != buildGeneration) {
+            // Đồ thị thay đổi trong lúc dựng: dùng kết quả cho lần này nhưng không giữ lại
+            candidates.remove(userId, built);
+        }
+        return built;
+    }
+
+    private LongIntCounter build(long userId) {
+        long start = System.nanoTime();
+        ImmutableLongSet friends = friendGraphCache.friendsOf(userId);
+        friendGraphCache.preload(friends);
+        LongIntCounter counter = new LongIntCounter(Math.max(16, friends.size() * 4));
+        for (int i = 0; i < friends.size(); i++) {
+            ImmutableLongSet friendsOfFriend = friendGraphCache.friendsOf(friends.get(i));
+            for (int j = 0; j < friendsOfFriend.size(); j++) {
+                long candidate = friendsOfFriend.get(j);
+                if (candidate != userId && !friends.contains(candidate)) {
+                    counter.add(candidate, 1);
+                }
+            }
+        }
+        log.debug("Built friend suggestions for user {} from {} friends in {} µs",
+            userId, friends.size(), (System.nanoTime() - start) / 1000);
+        return counter;
+    }
+
+    /**
+     * Giữ {@code topIds.length} ứng viên tốt nhất (nhiều bạn chung hơn, rồi id nhỏ hơn) bằng
+     * chèn vào mảng đã sắp xếp; trả về số ứng viên tìm được.
+     */
+    private static int selectTop(LongIntCounter counter, long[] topIds, int[] topCounts) {
+        int[] size = {0};
+        counter.forEach((candidate, count) -> {
+            int n = size[0];
+            if (n == topIds.length && !ranksBefore(count, candidate, topCounts[n - 1], topIds[n - 1])) {
+                return;
+            }
+            int position = n == topIds.length ? n - 1 : n;
+            while (position > 0 && ranksBefore(count, candidate, topCounts[position - 1], topIds[position - 1])) {
+                topIds[position] = topIds[position - 1];
+                topCounts[position] = topCounts[position - 1];
+                position--;
+            }
+            topIds[position] = candidate;
+            topCounts[position] = count;
+            if (n < topIds.length) {
+                size[0] = n + 1;
+            }
+        });
+        return size[0];
+    }
+
+    private static boolean ranksBefore(int count, long id, int otherCount, long otherId) {
+        return count > otherCount || (count == otherCount && id < otherId);
+    }
+}
@@ -1,15 +1,22 @@
 package com.chat.messmini.service;
 
+import com.chat.messmini.dto.CursorPage;
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.Friendship;
 import com.chat.messmini.entity.User;
+import com.chat.messmini.event.FriendshipChangedEvent;
 import com.chat.messmini.repository.FriendshipRepository;
+import com.chat.messmini.util.ImmutableLongSet;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @Service
@@ -17,8 +24,14 @@ import java.util.List;
 @Slf4j
 public class FriendshipService {
 
+    private static final int MAX_ONLINE_FRIENDS_PAGE_SIZE = 200;
+
     private final FriendshipRepository friendshipRepository;
     private final UserService userService;
+    private final PresenceStore presenceStore;
+    private final FriendGraphCache friendGraphCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
 
     @Transactional
     public void sendFriendRequest(User sender, User receiver) {
@@ -40,6 +53,7 @@ public class FriendshipService {
         friendship.setStatus(Friendship.Status.PENDING);
         friendship.setCreatedAt(LocalDateTime.now());
         friendshipRepository.save(friendship);
+        countOperation("request");
         log.info("Friend request sent successfully");
     }
 
@@ -73,6 +87,9 @@ public class FriendshipService {
         reverseFriendship.setCreatedAt(LocalDateTime.now());
         reverseFriendship.setUpdatedAt(LocalDateTime.now());
         friendshipRepository.save(reverseFriendship);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(
+            friendship.getSender().getId(), friendship.getReceiver().getId(), true));
+        countOperation("accept");
 
         log.info("Friend request accepted: {} and {} are now friends", 
             friendship.getSender().getUsername(), 
@@ -95,6 +112,7 @@ public class FriendshipService {
         friendship.setStatus(Friendship.Status.REJECTED);
         friendship.setUpdatedAt(LocalDateTime.now());
         friendshipRepository.save(friendship);
+        countOperation("reject");
         log.info("Friend request rejected: {} rejected request from {}", 
             friendship.getReceiver().getUsername(), 
             friendship.getSender().getUsername());
@@ -108,15 +126,8 @@ public class FriendshipService {
         return requests;
     }
 
-    @Transactional(readOnly = true)
-    public List<User> getFriends(Long userId) {
-        return getFriendsByUserId(userId);
-    }
-
-    @Transactional(readOnly = true)
     public boolean areFriends(Long userId1, Long userId2) {
-        return friendshipRepository.existsBySenderIdAndReceiverIdAndStatus(userId1, userId2, Friendship.Status.ACCEPTED) ||
-               friendshipRepository.existsBySenderIdAndReceiverIdAndStatus(userId2, userId1, Friendship.Status.ACCEPTED);
+        return friendGraphCache.areFriends(userId1, userId2);
     }
 
     @Transactional(readOnly = true)
@@ -124,38 +135,52 @@ public class FriendshipService {
         return friendshipRepository.existsBySenderIdAndReceiverIdAndStatus(senderId, receiverId, Friendship.Status.PENDING);
     }
 
-    public List<User> findFriendsByUser(User user) {
-        return getFriendsByUserId(user.getId());
+    /**
+     * Danh sách bạn bè chỉ với các trường hiển thị: id lấy từ {@link FriendGraphCache},
+     * thông tin user đọc bằng một truy vấn projection, trạng thái online từ PresenceStore.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getFriendSummaries(Long userId) {
+        ImmutableLongSet friendIds = getFriendIds(userId);
+        List<Long> ids = new ArrayList<>(friendIds.size());
+        friendIds.forEach(ids::add);
+
+        List<UserSummary> friends = new ArrayList<>(userService.getSummaries(ids));
+        ImmutableLongSet online = presenceStore.onlineAmong(friendIds);
+        friends.forEach(friend -> friend.setOnline(online.contains(friend.getId())));
+        friends.sort(Comparator.comparing(UserSummary::getId));
+        log.debug("Found {} friends for user {}", friends.size(), userId);
+        return friends;
     }
 
-    public List<User> getFriendsByUserId(Long userId) {
-        log.info("Getting friends for user {}", userId);
-        List<Friendship> friendships = friendshipRepository.findBySenderIdOrReceiverId(userId, userId);
-        List<User> friends = new ArrayList<>();
-        
-        for (Friendship friendship : friendships) {
-            if (friendship.getStatus() == Friendship.Status.ACCEPTED) {
-                // Nếu userId là người gửi, thêm người nhận vào danh sách bạn bè
-                if (friendship.getSender().getId().equals(userId)) {
-                    friends.add(friendship.getReceiver());
-                }
-                // Nếu userId là người nhận, thêm người gửi vào danh sách bạn bè
-                else if (friendship.getReceiver().getId().equals(userId)) {
-                    friends.add(friendship.getSender());
-                }
-            }
-        }
-        
-        log.info("Found {} friends for user {}", friends.size(), userId);
-        return friends;
+    public ImmutableLongSet getFriendIds(Long userId) {
+        return friendGraphCache.friendsOf(userId);
     }
 
-    public List<User> getFriendsByUsername(String username) {
-        User user = userService.findByUsername(username);
-        if (user == null) {
-            return List.of();
+    /**
+     * Bạn bè đang online của user, phân trang theo id tăng dần; trạng thái online lấy từ
+     * PresenceStore nên chỉ các bạn bè trên trang hiện tại mới được đọc từ DB.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<UserSummary> getOnlineFriends(Long userId, String after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_ONLINE_FRIENDS_PAGE_SIZE);
+        long afterId = after != null ? CursorCodec.decodeId(after) : Long.MIN_VALUE;
+
+        // Một lượt hỏi store cho cả tập bạn bè; tập kết quả đã sắp xếp theo id nên chỉ cần
+        // đọc tiếp từ sau cursor
+        ImmutableLongSet online = presenceStore.onlineAmong(getFriendIds(userId));
+        List<Long> onlineFriendIds = new ArrayList<>(pageSize + 1);
+        for (int i = online.indexAfter(afterId); i < online.size() && onlineFriendIds.size() <= pageSize; i++) {
+            onlineFriendIds.add(online.get(i));
         }
-        return getFriendsByUserId(user.getId());
+        boolean hasMore = onlineFriendIds.size() > pageSize;
+        List<Long> pageIds = hasMore ? onlineFriendIds.subList(0, pageSize) : onlineFriendIds;
+
+        List<UserSummary> friends = new ArrayList<>(userService.getSummaries(pageIds));
+        friends.forEach(friend -> friend.setOnline(true));
+        friends.sort(Comparator.comparing(UserSummary::getId));
+        String nextCursor = hasMore ? CursorCodec.encodeId(pageIds.get(pageIds.size() - 1)) : null;
+        return new CursorPage<>(friends, nextCursor);
     }
 
     public List<Friendship> getPendingRequestsByReceiverId(Long receiverId) {
@@ -166,8 +191,7 @@ public class FriendshipService {
     }
 
     public boolean existsFriendshipBetweenUsers(Long userId1, Long userId2) {
-        return friendshipRepository.existsBySenderIdAndReceiverIdAndStatus(userId1, userId2, Friendship.Status.ACCEPTED) ||
-               friendshipRepository.existsBySenderIdAndReceiverIdAndStatus(userId2, userId1, Friendship.Status.ACCEPTED);
+        return friendGraphCache.areFriends(userId1, userId2);
     }
 
     @Transactional
@@ -180,6 +204,12 @@ public class FriendshipService {
 
         // Delete both friendship records
         friendshipRepository.deleteBySenderIdAndReceiverId(userId, friendId);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, false));
+        countOperation("unfriend");
         log.info("Successfully unfriended users {} and {}", userId, friendId);
     }
+
+    private void countOperation(String operation) {
+        meterRegistry.counter("chat.friend.operations", "operation", operation).increment();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,252 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket theo user và theo đích cho các frame SEND từ client, chặn trước khi frame tới
+ * {@code @MessageMapping} (và tới DB phía sau {@code ChatService.saveMessage}).
+ * <p>
+ * Mỗi bucket là một ô {@code long} theo thuật toán GCRA: ô giữ "thời điểm đến lý thuyết" (TAT)
+ * của frame kế tiếp, một frame được nhận nếu {@code TAT - now <= (burst - 1) * interval} và khi
+ * đó TAT tăng thêm một interval. Tương đương token bucket nhưng không cần thread nạp lại token.
+ * Mỗi user có một {@link AtomicLongArray} riêng (một ô cho mỗi đích và một ô chung), mọi ô chỉ
+ * được sửa bằng CAS. Frame lấy token ở ô chung trước rồi tới ô của đích; nếu ô của đích từ chối thì
+ * token vừa lấy ở ô chung được trả lại, nên frame bị giới hạn theo đích không ăn mất token chung
+ * của các đích khác.
+ * <p>
+ * Bucket không bị bỏ khi user ngắt kết nối (kết nối lại không được reset giới hạn) mà chỉ khi
+ * mọi ô đã đầy trở lại, tức là không khác gì một bucket mới; một lượt quét định kỳ dọn chúng.
+ * Frame chen vào đúng lúc bucket bị gỡ có thể không được tính: tối đa thêm một frame trên một
+ * bucket vốn đang đầy.
+ * <p>
+ * Frame vượt giới hạn bị bỏ và session nhận một thông báo lỗi trên {@code /user/queue/errors}
+ * (tối đa một thông báo mỗi giây).
+ * Không dùng frame STOMP ERROR vì theo STOMP server phải đóng kết nối sau ERROR.
+ */
+@Component
+@Slf4j
+public class InboundRateLimiter implements ChannelInterceptor {
+
+    public static final String ERRORS_QUEUE = "/queue/errors";
+
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final LongSupplier nanoClock;
+    private final boolean enabled;
+    private final Duration evictionInterval;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final long[] intervalNanos;
+    private final long[] toleranceNanos;
+    private final Counter[] rejected;
+    private final int userSlot;
+    private final int noticeSlot;
+    private final long epoch;
+
+    private final Map<String, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Template được lấy lười: nó được tạo từ chính cấu hình broker mà interceptor này tham gia.
+     */
+    @Autowired
+    public InboundRateLimiter(ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                              RateLimitProperties properties,
+                              MeterRegistry meterRegistry) {
+        this(messagingTemplate, properties, meterRegistry, System::nanoTime);
+    }
+
+    InboundRateLimiter(ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                       RateLimitProperties properties,
+                       MeterRegistry meterRegistry,
+                       LongSupplier nanoClock) {
+        this.messagingTemplate = messagingTemplate;
+        this.nanoClock = nanoClock;
+        this.epoch = nanoClock.getAsLong();
+        this.enabled = properties.isEnabled();
+        this.evictionInterval = properties.getEvictionInterval();
+
+        List<RateLimitProperties.Rule> rules = properties.getDestinations();
+        this.userSlot = rules.size();
+        this.noticeSlot = rules.size() + 1;
+        this.intervalNanos = new long[rules.size() + 2];
+        this.toleranceNanos = new long[rules.size() + 2];
+        this.rejected = new Counter[rules.size() + 1];
+        for (int i = 0; i < rules.size(); i++) {
+            RateLimitProperties.Rule rule = rules.get(i);
+            slots.put(rule.getDestination(), i);
+            configure(i, rule, "destination", rule.getDestination(), meterRegistry);
+        }
+        configure(userSlot, properties.getUser(), "user", "*", meterRegistry);
+        // Thông báo lỗi cũng bị giới hạn, tối đa một lần mỗi giây, để client spam không khuếch đại thành outbound
+        intervalNanos[noticeSlot] = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private void configure(int slot, RateLimitProperties.Rule rule, String scope, String destination, MeterRegistry meterRegistry) {
+        if (rule.getPermitsPerSecond() <= 0 || rule.getBurst() < 1) {
+            throw new IllegalArgumentException("Invalid rate limit for " + destination
+                + ": permitsPerSecond must be > 0 and burst >= 1");
+        }
+        intervalNanos[slot] = (long) (TimeUnit.SECONDS.toNanos(1) / rule.getPermitsPerSecond());
+        toleranceNanos[slot] = intervalNanos[slot] * (rule.getBurst() - 1);
+        rejected[slot] = Counter.builder("chat.ws.inbound.rejected")
+            .description("Client SEND frames rejected by the rate limiter")
+            .tag("scope", scope)
+            .tag("destination", destination)
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = evictionInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::evictFullSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String key = user != null ? user.getName() : sessionId;
+        if (destination == null || key == null) {
+            return message;
+        }
+
+        long now = nanoClock.getAsLong() - epoch;
+        Integer slot = slots.get(destination);
+        AtomicLongArray tats = buckets.computeIfAbsent(key, k -> new AtomicLongArray(noticeSlot + 1));
+        long retryAfter = tryTake(tats, userSlot, now);
+        int limitedSlot = userSlot;
+        if (retryAfter == 0) {
+            if (slot == null) {
+                return message;
+            }
+            retryAfter = tryTake(tats, slot, now);
+            if (retryAfter == 0) {
+                return message;
+            }
+            // Đích từ chối: trả lại token đã lấy ở ô chung
+            tats.addAndGet(userSlot, -intervalNanos[userSlot]);
+            limitedSlot = slot;
+        }
+        boolean notify = user != null && tryTake(tats, noticeSlot, now) == 0;
+
+        rejected[limitedSlot].increment();
+        log.debug("Rate limited {} on {} (session {}), retry after {} ms",
+            key, destination, sessionId, TimeUnit.NANOSECONDS.toMillis(retryAfter));
+        if (notify) {
+            sendError(user.getName(), sessionId, destination, retryAfter);
+        }
+        return null;
+    }
+
+    /**
+     * Lấy một token của ô bằng CAS: trả về 0 nếu lấy được, ngược lại là số nano giây cần chờ và ô
+     * không bị đổi.
+     */
+    private long tryTake(AtomicLongArray tats, int slot, long now) {
+        while (true) {
+            long tat = tats.get(slot);
+            long start = Math.max(tat, now);
+            long wait = start - now - toleranceNanos[slot];
+            if (wait > 0) {
+                return wait;
+            }
+            if (tats.compareAndSet(slot, tat, start + intervalNanos[slot])) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gỡ các bucket mà mọi ô đã đầy trở lại: giữ hay bỏ chúng cho cùng một kết quả.
+     */
+    void evictFull() {
+        long now = nanoClock.getAsLong() - epoch;
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLongArray> entry : buckets.entrySet()) {
+            if (isFull(entry.getValue(), now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        log.debug("Evicted {} idle rate limit buckets, {} left", evicted, buckets.size());
+    }
+
+    private void evictFullSafely() {
+        try {
+            evictFull();
+        } catch (Exception e) {
+            log.error("Error evicting rate limit buckets: {}", e.getMessage(), e);
+        }
+    }
+
+    private void sendError(String username, String sessionId, String destination, long retryAfterNanos) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        try {
+            messagingTemplate.getObject().convertAndSendToUser(username, ERRORS_QUEUE, Map.of(
+                "error", "RATE_LIMITED",
+                "destination", destination,
+                "retryAfterMs", Math.max(1, TimeUnit.NANOSECONDS.toMillis(retryAfterNanos))
+            ), headers.getMessageHeaders());
+        } catch (Exception e) {
+            log.warn("Error sending rate limit notice to {}: {}", username, e.getMessage());
+        }
+    }
+
+    public int trackedUsers() {
+        return buckets.size();
+    }
+
+    private static boolean isFull(AtomicLongArray tats, long now) {
+        for (int i = 0; i < tats.length(); i++) {
+            if (tats.get(i) > now) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
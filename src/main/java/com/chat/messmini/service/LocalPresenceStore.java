@@ -0,0 +1,135 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.PresenceProperties;
+import com.chat.messmini.util.ImmutableLongSet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link PresenceStore} trong bộ nhớ: user id → (node id → thời điểm hết hạn). Dùng khi chạy
+ * một node và trong test; cùng ngữ nghĩa TTL với {@link RedisPresenceStore}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "messmini.presence", name = "store", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LocalPresenceStore implements PresenceStore {
+
+    private final PresenceProperties properties;
+
+    private final ConcurrentMap<Long, ConcurrentMap<String, Long>> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void sessionsChanged(String nodeId, long userId, int sessions) {
+        if (sessions > 0) {
+            touch(nodeId, userId, expiresAt());
+        } else {
+            entries.computeIfPresent(userId, (id, nodes) -> {
+                nodes.remove(nodeId);
+                return nodes.isEmpty() ? null : nodes;
+            });
+        }
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Map<Long, Integer> sessionCounts) {
+        long expiresAt = expiresAt();
+        sessionCounts.forEach((userId, sessions) -> {
+            if (sessions > 0) {
+                touch(nodeId, userId, expiresAt);
+            }
+        });
+    }
+
+    @Override
+    public List<Long> sweepExpired() {
+        // User rời node cuối cùng có kiểm soát đã bị gỡ hẳn ở sessionsChanged nên không có ở đây
+        long now = System.currentTimeMillis();
+        List<Long> expired = new ArrayList<>();
+        entries.keySet().forEach(userId -> entries.computeIfPresent(userId, (id, nodes) -> {
+            nodes.values().removeIf(expiry -> expiry <= now);
+            if (nodes.isEmpty()) {
+                expired.add(id);
+                return null;
+            }
+            return nodes;
+        }));
+        return expired;
+    }
+
+    @Override
+    public void removeNode(String nodeId, Collection<Long> userIds) {
+        userIds.forEach(userId -> sessionsChanged(nodeId, userId, 0));
+    }
+
+    @Override
+    public boolean isOnline(long userId) {
+        Map<String, Long> nodes = entries.get(userId);
+        if (nodes == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (Long expiry : nodes.values()) {
+            if (expiry > now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ImmutableLongSet onlineAmong(ImmutableLongSet userIds) {
+        long[] online = new long[userIds.size()];
+        int count = 0;
+        for (int i = 0; i < userIds.size(); i++) {
+            long userId = userIds.get(i);
+            if (isOnline(userId)) {
+                online[count++] = userId;
+            }
+        }
+        return count == userIds.size() ? userIds : ImmutableLongSet.of(Arrays.copyOf(online, count));
+    }
+
+    @Override
+    public List<Long> onlineUserIds() {
+        List<Long> ids = new ArrayList<>();
+        entries.keySet().forEach(userId -> {
+            if (isOnline(userId)) {
+                ids.add(userId);
+            }
+        });
+        return ids;
+    }
+
+    @Override
+    public long onlineCount() {
+        long count = 0;
+        for (Long userId : entries.keySet()) {
+            if (isOnline(userId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void touch(String nodeId, long userId, long expiresAt) {
+        // compute thay vì computeIfAbsent + put để không ghi vào một map vừa bị gỡ khỏi entries
+        entries.compute(userId, (id, nodes) -> {
+            ConcurrentMap<String, Long> next = nodes != null ? nodes : new ConcurrentHashMap<>();
+            next.put(nodeId, expiresAt);
+            return next;
+        });
+    }
+
+    private long expiresAt() {
+        return System.currentTimeMillis() + properties.getTtl().toMillis();
+    }
+}
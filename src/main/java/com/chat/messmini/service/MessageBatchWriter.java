@@ -0,0 +1,344 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.WriteBehindProperties;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.model.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gom tin nhắn riêng từ luồng inbound của broker vào hàng đợi có giới hạn và ghi
+ * xuống DB theo lô: một batch insert JDBC, một commit cho cả nhóm. Future của mỗi
+ * tin nhắn chỉ hoàn thành sau khi nhóm chứa nó đã commit.
+ * <p>
+ * Future được hoàn thành và event được phát trên một luồng riêng ({@code chat-write-behind-complete}),
+ * không phải luồng ghi: fan-out trong {@code whenComplete} của caller chạy song song với lần commit
+ * kế tiếp thay vì chặn nó. Luồng đó chỉ có một nên thứ tự giao tin vẫn là thứ tự commit.
+ */
+@Service
+@Slf4j
+public class MessageBatchWriter {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO messages (sender_id, receiver_id, content, timestamp, is_read, encrypted) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WriteBehindProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserSnapshotCache userSnapshotCache;
+    private final BlockingQueue<PendingMessage> queue;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer commitTimer;
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private ExecutorService completionExecutor;
+
+    public MessageBatchWriter(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              WriteBehindProperties properties,
+                              ApplicationEventPublisher eventPublisher,
+                              UserSnapshotCache userSnapshotCache,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.userSnapshotCache = userSnapshotCache;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        this.batchSizeSummary = DistributionSummary.builder("chat.writebehind.batch.size")
+            .description("Number of private messages committed per group")
+            .register(meterRegistry);
+        this.commitTimer = Timer.builder("chat.writebehind.commit")
+            .description("Latency of one group commit of private messages")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.writebehind.rejected")
+            .description("Private messages rejected because the write-behind queue was full")
+            .register(meterRegistry);
+        Gauge.builder("chat.writebehind.queue.depth", queue, BlockingQueue::size)
+            .description("Private messages waiting to be persisted")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        completionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-write-behind-complete");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        writerThread = new Thread(this::runLoop, "chat-write-behind");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Message write-behind started: batchSize={}, maxLinger={}, queueCapacity={}",
+            properties.getBatchSize(), properties.getMaxLinger(), properties.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long timeoutMillis = Math.max(1, properties.getShutdownTimeout().toMillis());
+        if (writerThread != null) {
+            // Writer tự thoát sau khi đã xả hết hàng đợi
+            writerThread.join(timeoutMillis);
+            if (writerThread.isAlive()) {
+                // Writer vẫn đang commit: giữ executor hoàn tất để future của các tin đã commit vẫn
+                // được hoàn tất (luồng daemon, không chặn JVM thoát)
+                log.warn("Message write-behind still flushing after {} ms, {} messages left in queue",
+                    timeoutMillis, queue.size());
+                return;
+            }
+        }
+        if (completionExecutor != null) {
+            completionExecutor.shutdown();
+            completionExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        log.info("Message write-behind stopped, {} messages left in queue", queue.size());
+    }
+
+    public CompletableFuture<PersistedMessage> submit(ChatMessage chatMessage) {
+        PendingMessage pending = new PendingMessage(
+            chatMessage.getSenderId(),
+            chatMessage.getReceiverId(),
+            chatMessage.getContent(),
+            chatMessage.isEncrypted(),
+            LocalDateTime.now()
+        );
+        try {
+            if (!running || !queue.offer(pending, properties.getEnqueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                rejectedCounter.increment();
+                pending.future.completeExceptionally(new IllegalStateException("Message queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    private void runLoop() {
+        List<PendingMessage> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in message write-behind: {}", e.getMessage(), e);
+                fail(new ArrayList<>(batch), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fillBatch(List<PendingMessage> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + properties.getMaxLinger().toNanos();
+        while (batch.size() < properties.getBatchSize()) {
+            if (queue.drainTo(batch, properties.getBatchSize() - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Một truy vấn cho cả nhóm thay vì hai findById cho mỗi tin nhắn
+        Map<Long, String> usernames = loadUsernames(batch);
+        List<PendingMessage> accepted = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            if (!usernames.containsKey(pending.senderId)) {
+                fail(List.of(pending), new RuntimeException("Sender not found"));
+            } else if (!usernames.containsKey(pending.receiverId)) {
+                fail(List.of(pending), new RuntimeException("Receiver not found"));
+            } else {
+                accepted.add(pending);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids;
+        long start = System.nanoTime();
+        try {
+            ids = transactionTemplate.execute(status -> insertBatch(accepted));
+        } catch (Exception e) {
+            log.error("Error saving batch of {} messages: {}", accepted.size(), e.getMessage(), e);
+            fail(accepted, e);
+            return;
+        }
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(accepted.size());
+        log.debug("Committed batch of {} messages", accepted.size());
+
+        List<PersistedMessage> persisted = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            PendingMessage pending = accepted.get(i);
+            persisted.add(new PersistedMessage(
+                ids.get(i),
+                pending.senderId,
+                usernames.get(pending.senderId),
+                pending.receiverId,
+                usernames.get(pending.receiverId),
+                pending.content,
+                pending.timestamp,
+                false,
+                pending.encrypted
+            ));
+        }
+        dispatch(() -> complete(accepted, persisted));
+    }
+
+    private void complete(List<PendingMessage> accepted, List<PersistedMessage> persisted) {
+        for (int i = 0; i < accepted.size(); i++) {
+            PersistedMessage message = persisted.get(i);
+            accepted.get(i).future.complete(message);
+            try {
+                eventPublisher.publishEvent(new PrivateMessagePersistedEvent(message));
+            } catch (Exception e) {
+                log.error("Error publishing persisted message {}: {}", message.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void fail(List<PendingMessage> failed, Throwable error) {
+        dispatch(() -> failed.forEach(pending -> pending.future.completeExceptionally(error)));
+    }
+
+    /**
+     * Hoàn tất future trên executor riêng; nếu executor đã dừng thì hoàn tất ngay trên luồng
+     * writer thay vì bỏ rơi chúng.
+     */
+    private void dispatch(Runnable completion) {
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    private List<Long> insertBatch(List<PendingMessage> batch) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            con -> con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    PendingMessage pending = batch.get(i);
+                    ps.setLong(1, pending.senderId);
+                    ps.setLong(2, pending.receiverId);
+                    ps.setString(3, pending.content);
+                    ps.setTimestamp(4, Timestamp.valueOf(pending.timestamp));
+                    ps.setBoolean(5, false);
+                    ps.setBoolean(6, pending.encrypted);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            },
+            keyHolder
+        );
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != batch.size()) {
+            throw new IllegalStateException("Expected " + batch.size() + " generated keys but got " + keys.size());
+        }
+        List<Long> ids = new ArrayList<>(keys.size());
+        for (Map<String, Object> key : keys) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    private Map<Long, String> loadUsernames(List<PendingMessage> batch) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (PendingMessage pending : batch) {
+            userIds.add(pending.senderId);
+            userIds.add(pending.receiverId);
+        }
+        // Phần lớn user đã nằm trong cache; chỉ những id còn thiếu mới cần một truy vấn IN
+        Map<Long, String> usernames = new HashMap<>();
+        userSnapshotCache.getAll(userIds).forEach((id, user) -> usernames.put(id, user.getUsername()));
+        return usernames;
+    }
+
+    private static final class PendingMessage {
+        private final Long senderId;
+        private final Long receiverId;
+        private final String content;
+        private final boolean encrypted;
+        private final LocalDateTime timestamp;
+        private final CompletableFuture<PersistedMessage> future = new CompletableFuture<>();
+
+        private PendingMessage(Long senderId, Long receiverId, String content, boolean encrypted,
+                               LocalDateTime timestamp) {
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.content = content;
+            this.encrypted = encrypted;
+            this.timestamp = timestamp;
+        }
+    }
+}
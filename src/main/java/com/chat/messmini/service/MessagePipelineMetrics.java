@@ -0,0 +1,101 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.event.PresenceChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer cho từng chặng của đường đi một tin nhắn và các chỉ số về session / presence.
+ * <p>
+ * {@code chat.pipeline.stage{path, stage}}: {@code decode} là thời gian Jackson đọc payload của
+ * frame SEND, {@code persist} là từ lúc gửi cho writer tới lúc lô commit (private) hoặc thời gian
+ * lưu tin nhắn phòng, {@code fanout} là encode và giao cho broker. Các timer chỉ publish histogram
+ * theo bucket cố định (Prometheus tính phân vị phía server), không tính phân vị trong JVM, nên
+ * mỗi lần ghi chỉ là vài phép cộng nguyên tử.
+ */
+@Component
+public class MessagePipelineMetrics {
+
+    public enum Path {
+        PRIVATE("/app/chat.private"),
+        ROOM("/app/chat.room");
+
+        private final String destination;
+
+        Path(String destination) {
+            this.destination = destination;
+        }
+
+        /** Path của một frame SEND theo destination, hoặc null nếu không thuộc đường tin nhắn. */
+        public static Path ofDestination(String destination) {
+            for (Path path : values()) {
+                if (path.destination.equals(destination)) {
+                    return path;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Stage {
+        DECODE, PERSIST, FANOUT
+    }
+
+    private final Timer[][] timers = new Timer[Path.values().length][Stage.values().length];
+    private final Counter wentOnline;
+    private final Counter wentOffline;
+
+    public MessagePipelineMetrics(MeterRegistry meterRegistry,
+                                  PresenceRegistry presenceRegistry,
+                                  PresenceStore presenceStore) {
+        for (Path path : Path.values()) {
+            for (Stage stage : Stage.values()) {
+                timers[path.ordinal()][stage.ordinal()] = Timer.builder("chat.pipeline.stage")
+                    .description("Time spent in each stage of the message path")
+                    .tag("path", path.name().toLowerCase(Locale.ROOT))
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(meterRegistry);
+            }
+        }
+        this.wentOnline = Counter.builder("chat.presence.transitions")
+            .description("Users going online or offline on this node")
+            .tag("state", "online")
+            .register(meterRegistry);
+        this.wentOffline = Counter.builder("chat.presence.transitions")
+            .description("Users going online or offline on this node")
+            .tag("state", "offline")
+            .register(meterRegistry);
+
+        Gauge.builder("chat.sessions.live", presenceRegistry, PresenceRegistry::sessionCount)
+            .description("WebSocket sessions connected to this node")
+            .register(meterRegistry);
+        Gauge.builder("chat.users.online", presenceRegistry, PresenceRegistry::onlineUserCount)
+            .description("Users with at least one session")
+            .tag("scope", "node")
+            .register(meterRegistry);
+        Gauge.builder("chat.users.online", presenceStore, PresenceStore::onlineCount)
+            .description("Users with at least one session")
+            .tag("scope", "cluster")
+            .register(meterRegistry);
+    }
+
+    public void record(Path path, Stage stage, long startNanos) {
+        timers[path.ordinal()][stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        (event.isOnline() ? wentOnline : wentOffline).increment();
+    }
+}
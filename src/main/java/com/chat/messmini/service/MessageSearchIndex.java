@@ -0,0 +1,376 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.SearchProperties;
+import com.chat.messmini.dto.MessageSearchHit;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.event.RoomMessageSentEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index toàn văn (Lucene, lưu trên đĩa cục bộ) cho tin nhắn phòng và tin nhắn riêng không mã hóa.
+ * <p>
+ * Tin nhắn được thêm dần sau khi commit, trên một luồng riêng để không làm chậm đường gửi tin.
+ * Ciphertext ({@code encrypted = true}) không bao giờ được index. Mỗi document mang
+ * {@code participant} (tin riêng) hoặc {@code room} (tin phòng) để truy vấn chỉ trả về các cuộc
+ * trò chuyện mà người tìm tham gia. Nội dung được gấp dấu nên tìm "nguoi" khớp "người".
+ * <p>
+ * Luồng indexer là nơi duy nhất ghi vào index, kể cả {@link #rebuild}: tin nhắn mới đến trong lúc
+ * dựng lại xếp hàng sau nó thay vì bị xóa mất giữa chừng.
+ */
+@Component
+@Slf4j
+public class MessageSearchIndex {
+
+    static final String FIELD_KEY = "key";
+    static final String FIELD_TYPE = "type";
+    static final String FIELD_MESSAGE_ID = "messageId";
+    static final String FIELD_SENDER = "sender";
+    static final String FIELD_RECEIVER = "receiver";
+    static final String FIELD_PARTICIPANT = "participant";
+    static final String FIELD_ROOM = "room";
+    static final String FIELD_CONTENT = "content";
+    static final String FIELD_TIMESTAMP = "timestamp";
+
+    private final SearchProperties properties;
+    private final Analyzer analyzer = new FoldingAnalyzer();
+
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ExecutorService indexer;
+    private ScheduledExecutorService maintenance;
+    // Đang dựng lại: không commit, không refresh để người tìm vẫn thấy index cũ đến khi xong
+    private boolean rebuilding;
+
+    public MessageSearchIndex(SearchProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(properties.getIndexDir());
+        directory = FSDirectory.open(properties.getIndexDir());
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+            .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        indexer = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "message-search-indexer"));
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "message-search-maintenance"));
+        long refreshMillis = properties.getRefreshInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::refreshSafely, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        long commitMillis = properties.getCommitInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::commitSafely, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+        log.info("Message search index opened at {} with {} documents",
+            properties.getIndexDir().toAbsolutePath(), writer.getDocStats().numDocs);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        indexer.shutdown();
+        indexer.awaitTermination(10, TimeUnit.SECONDS);
+        maintenance.shutdownNow();
+        searcherManager.close();
+        synchronized (this) {
+            if (rebuilding) {
+                // Lần dựng lại chưa xong: bỏ thay đổi, trên đĩa vẫn là commit trước đó
+                writer.rollback();
+            } else {
+                writer.close();
+            }
+        }
+        directory.close();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrivateMessagePersisted(PrivateMessagePersistedEvent event) {
+        PersistedMessage message = event.getMessage();
+        if (message.isEncrypted()) {
+            return;
+        }
+        indexer.execute(() -> indexSafely(privateDocument(
+            message.getId(), message.getSenderId(), message.getReceiverId(),
+            message.getContent(), message.getTimestamp())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomMessageSent(RoomMessageSentEvent event) {
+        indexer.execute(() -> indexSafely(roomDocument(
+            event.getMessageId(), event.getRoomId(), event.getSenderId(),
+            event.getContent(), event.getTimestamp())));
+    }
+
+    /**
+     * Tìm trong tin nhắn riêng của {@code userId} và tin nhắn của các phòng {@code roomIds};
+     * mọi từ trong truy vấn phải xuất hiện, từ cuối được khớp theo tiền tố.
+     */
+    public List<MessageSearchHit> search(Long userId, Collection<Long> roomIds, String text, int limit) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        BooleanQuery.Builder content = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            Term term = new Term(FIELD_CONTENT, terms.get(i));
+            Query query = i == terms.size() - 1 ? new PrefixQuery(term) : new TermQuery(term);
+            content.add(query, BooleanClause.Occur.MUST);
+        }
+
+        BooleanQuery.Builder visibility = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term(FIELD_PARTICIPANT, userId.toString())), BooleanClause.Occur.SHOULD);
+        if (!roomIds.isEmpty()) {
+            List<BytesRef> rooms = new ArrayList<>(roomIds.size());
+            roomIds.forEach(roomId -> rooms.add(new BytesRef(roomId.toString())));
+            visibility.add(new TermInSetQuery(FIELD_ROOM, rooms), BooleanClause.Occur.SHOULD);
+        }
+        visibility.setMinimumNumberShouldMatch(1);
+
+        Query query = new BooleanQuery.Builder()
+            .add(content.build(), BooleanClause.Occur.MUST)
+            .add(visibility.build(), BooleanClause.Occur.FILTER)
+            .build();
+        Sort sort = new Sort(SortField.FIELD_SCORE, new SortField(FIELD_TIMESTAMP, SortField.Type.LONG, true));
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, limit, sort, true);
+            StoredFields storedFields = searcher.storedFields();
+            List<MessageSearchHit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                hits.add(toHit(storedFields.document(scoreDoc.doc), scoreDoc.score));
+            }
+            return hits;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error searching messages", e);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    log.warn("Error releasing message searcher: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Xóa index và nạp lại bằng {@code backfill} (gọi {@link #addPrivateMessage} và
+     * {@link #addRoomMessage}), chờ tới khi xong.
+     * <p>
+     * Chạy trên luồng indexer nên không tranh ghi với tin nhắn mới: tin commit trong lúc dựng lại
+     * được index sau đó (cập nhật theo khóa nên không trùng). Người tìm tiếp tục thấy index cũ cho
+     * đến khi commit cuối cùng đổi sang index mới trong một lần refresh. Nếu {@code backfill} lỗi,
+     * index cũ vẫn được phục vụ và thay đổi bị bỏ khi đóng.
+     */
+    public void rebuild(Backfill backfill) throws Exception {
+        Future<Void> done = indexer.submit(() -> {
+            synchronized (this) {
+                rebuilding = true;
+            }
+            writer.deleteAll();
+            backfill.run();
+            synchronized (this) {
+                writer.commit();
+                searcherManager.maybeRefresh();
+                rebuilding = false;
+            }
+            return null;
+        });
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /** Chỉ gọi từ {@link Backfill} trong {@link #rebuild}. */
+    public void addPrivateMessage(long messageId, long senderId, long receiverId, String content, LocalDateTime timestamp)
+            throws IOException {
+        writer.updateDocument(new Term(FIELD_KEY, key(MessageSearchHit.PRIVATE, messageId)),
+            privateDocument(messageId, senderId, receiverId, content, timestamp));
+    }
+
+    /** Chỉ gọi từ {@link Backfill} trong {@link #rebuild}. */
+    public void addRoomMessage(long messageId, long roomId, long senderId, String content, LocalDateTime timestamp)
+            throws IOException {
+        writer.updateDocument(new Term(FIELD_KEY, key(MessageSearchHit.ROOM, messageId)),
+            roomDocument(messageId, roomId, senderId, content, timestamp));
+    }
+
+    private void indexSafely(Document document) {
+        try {
+            writer.updateDocument(new Term(FIELD_KEY, document.get(FIELD_KEY)), document);
+        } catch (Exception e) {
+            log.error("Error indexing message {}: {}", document.get(FIELD_KEY), e.getMessage(), e);
+        }
+    }
+
+    private synchronized void refreshSafely() {
+        if (rebuilding) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (Exception e) {
+            log.warn("Error refreshing message searcher: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void commitSafely() {
+        if (rebuilding) {
+            return;
+        }
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (Exception e) {
+            log.error("Error committing message search index: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Document privateDocument(long messageId, long senderId, long receiverId,
+                                            String content, LocalDateTime timestamp) {
+        Document document = baseDocument(MessageSearchHit.PRIVATE, messageId, senderId, content, timestamp);
+        document.add(new StoredField(FIELD_RECEIVER, receiverId));
+        document.add(new StringField(FIELD_PARTICIPANT, Long.toString(senderId), Field.Store.NO));
+        document.add(new StringField(FIELD_PARTICIPANT, Long.toString(receiverId), Field.Store.NO));
+        return document;
+    }
+
+    private static Document roomDocument(long messageId, long roomId, long senderId,
+                                         String content, LocalDateTime timestamp) {
+        Document document = baseDocument(MessageSearchHit.ROOM, messageId, senderId, content, timestamp);
+        document.add(new StringField(FIELD_ROOM, Long.toString(roomId), Field.Store.YES));
+        return document;
+    }
+
+    private static Document baseDocument(String type, long messageId, long senderId,
+                                         String content, LocalDateTime timestamp) {
+        long epochMillis = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+        Document document = new Document();
+        document.add(new StringField(FIELD_KEY, key(type, messageId), Field.Store.YES));
+        document.add(new StringField(FIELD_TYPE, type, Field.Store.YES));
+        document.add(new LongPoint(FIELD_MESSAGE_ID, messageId));
+        document.add(new StoredField(FIELD_MESSAGE_ID, messageId));
+        document.add(new StoredField(FIELD_SENDER, senderId));
+        document.add(new TextField(FIELD_CONTENT, content != null ? content : "", Field.Store.YES));
+        document.add(new NumericDocValuesField(FIELD_TIMESTAMP, epochMillis));
+        document.add(new StoredField(FIELD_TIMESTAMP, epochMillis));
+        return document;
+    }
+
+    private static String key(String type, long messageId) {
+        return type + ":" + messageId;
+    }
+
+    private static MessageSearchHit toHit(Document document, float score) {
+        String type = document.get(FIELD_TYPE);
+        boolean room = MessageSearchHit.ROOM.equals(type);
+        return new MessageSearchHit(
+            type,
+            document.getField(FIELD_MESSAGE_ID).numericValue().longValue(),
+            document.getField(FIELD_SENDER).numericValue().longValue(),
+            room ? null : document.getField(FIELD_RECEIVER).numericValue().longValue(),
+            room ? Long.valueOf(document.get(FIELD_ROOM)) : null,
+            document.get(FIELD_CONTENT),
+            LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(document.getField(FIELD_TIMESTAMP).numericValue().longValue()), ZoneOffset.UTC),
+            score
+        );
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(FIELD_CONTENT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error analyzing search query", e);
+        }
+        return terms;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @FunctionalInterface
+    public interface Backfill {
+        void run() throws Exception;
+    }
+
+    /** Tách từ theo chuẩn Unicode, chữ thường, gấp dấu tiếng Việt về ASCII. */
+    private static final class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            stream = new ASCIIFoldingFilter(stream);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.chat.messmini.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Dựng lại index tìm kiếm tin nhắn từ DB khi khởi động với {@code messmini.search.rebuild=true},
+ * ví dụ: {@code ./mvnw spring-boot:run -Dspring-boot.run.arguments=--messmini.search.rebuild=true}.
+ * Đọc bằng cursor (fetch size) nên không giữ cả bảng trong bộ nhớ; tin nhắn mã hóa bị bỏ qua.
+ * Việc dựng lại chạy trên luồng ghi duy nhất của index ({@link MessageSearchIndex#rebuild}).
+ */
+@Component
+@ConditionalOnProperty(name = "messmini.search.rebuild", havingValue = "true")
+@Slf4j
+public class MessageSearchRebuilder implements ApplicationRunner {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final MessageSearchIndex messageSearchIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageSearchRebuilder(MessageSearchIndex messageSearchIndex, DataSource dataSource) {
+        this.messageSearchIndex = messageSearchIndex;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.nanoTime();
+        log.info("Rebuilding message search index");
+        long[] privateCount = {0};
+        long[] roomCount = {0};
+        messageSearchIndex.rebuild(() -> {
+            jdbcTemplate.query(
+                "SELECT id, sender_id, receiver_id, content, timestamp FROM messages WHERE encrypted = false ORDER BY id",
+                rs -> {
+                    // Hàng cũ mang cờ encrypted do client gửi: kiểm tra lại nội dung trước khi index
+                    String content = rs.getString(4);
+                    if (EncryptedContent.isCiphertext(content)) {
+                        return;
+                    }
+                    try {
+                        messageSearchIndex.addPrivateMessage(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                            content, rs.getTimestamp(5).toLocalDateTime());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    privateCount[0]++;
+                });
+
+            jdbcTemplate.query(
+                "SELECT id, room_id, sender_id, content, timestamp FROM room_messages ORDER BY id",
+                rs -> {
+                    try {
+                        messageSearchIndex.addRoomMessage(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                            rs.getString(4), rs.getTimestamp(5).toLocalDateTime());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    roomCount[0]++;
+                });
+        });
+        log.info("Message search index rebuilt: {} private and {} room messages in {} ms",
+            privateCount[0], roomCount[0], (System.nanoTime() - start) / 1_000_000);
+    }
+}
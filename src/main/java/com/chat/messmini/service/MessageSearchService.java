@@ -0,0 +1,31 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.dto.MessageSearchHit;
+import com.chat.messmini.repository.ChatRoomRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSearchService {
+
+    private static final int MAX_RESULTS = 100;
+
+    private final MessageSearchIndex messageSearchIndex;
+    private final ChatRoomRepository chatRoomRepository;
+
+    @Transactional(readOnly = true)
+    public List<MessageSearchHit> search(Long userId, String query, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_RESULTS);
+        // Chỉ các phòng user đang là thành viên; tin riêng được lọc theo participant trong index
+        List<Long> roomIds = chatRoomRepository.findRoomIdsByMemberId(userId);
+        List<MessageSearchHit> hits = messageSearchIndex.search(userId, roomIds, query, size);
+        log.debug("Message search by user {} for '{}' returned {} hits", userId, query, hits.size());
+        return hits;
+    }
+}
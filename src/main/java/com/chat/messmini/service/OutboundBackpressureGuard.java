@@ -0,0 +1,364 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.WebSocketProperties;
+import com.chat.messmini.event.SessionBacklogDrainedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Giới hạn hàng đợi outbound của từng session để một client trên mạng chậm không làm phình heap
+ * hay làm chậm các session khác.
+ * <p>
+ * Guard là interceptor của client outbound channel và tự giữ một hàng đợi cho mỗi session: mỗi
+ * lúc chỉ một frame của session nằm trong executor, frame tiếp theo được thả khi frame trước đã
+ * ghi xong ra transport. Nhờ vậy thứ tự trong một session được giữ (thay cho
+ * {@code preservePublishOrder} của Spring, vốn dồn hàng đợi vào chỗ không đo được) và độ sâu
+ * hàng đợi là chính xác. Chính sách theo mức:
+ * <ul>
+ *   <li>từ {@code drop-threshold} trở lên: frame thuộc {@code drop-destinations} (typing) bị bỏ;
+ *       frame thuộc {@code coalesce-destinations} (presence) bị bỏ và khi hàng đợi cạn một
+ *       {@link SessionBacklogDrainedEvent} được phát để chủ của đích gửi lại một bản gộp;</li>
+ *   <li>tin nhắn chat và mọi frame khác luôn được giữ;</li>
+ *   <li>vượt {@code max-queued-messages}, {@code max-queued-bytes}, hoặc frame đang ghi treo quá
+ *       {@code send-time-limit}: session bị đóng và hàng đợi được giải phóng.</li>
+ * </ul>
+ * Đồng hồ {@code send-time-limit} bắt đầu ở {@link #beforeHandle}, khi thread của executor nhận
+ * frame để ghi, không phải lúc frame được thả vào executor: thời gian chờ thread khi executor bận
+ * với session khác không phải lỗi của client này.
+ * Reply của {@code @SubscribeMapping} (đích {@code /app/...}) đi thẳng không xếp hàng: template
+ * gửi chúng coi một send bị giữ lại là lỗi.
+ */
+@Component
+@Slf4j
+public class OutboundBackpressureGuard implements ExecutorChannelInterceptor {
+
+    private static final String APP_DESTINATION_PREFIX = "/app";
+    private static final ThreadLocal<Boolean> RELEASING = new ThreadLocal<>();
+
+    private final WebSocketProperties.Backpressure properties;
+    private final long sendTimeLimitNanos;
+    private final long maxQueuedBytes;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+
+    private final Counter dropped;
+    private final Counter coalesced;
+    private final Counter closedForDepth;
+    private final Counter closedForSendTime;
+    private final DistributionSummary queueDepth;
+
+    public OutboundBackpressureGuard(WebSocketProperties webSocketProperties,
+                                     ApplicationEventPublisher eventPublisher,
+                                     MeterRegistry meterRegistry) {
+        this.properties = webSocketProperties.getOutbound().getBackpressure();
+        this.sendTimeLimitNanos = webSocketProperties.getTransport().getSendTimeLimit().toNanos();
+        this.maxQueuedBytes = properties.getMaxQueuedBytes().toBytes();
+        this.eventPublisher = eventPublisher;
+
+        this.dropped = Counter.builder("chat.ws.outbound.dropped")
+            .description("Outbound frames dropped for sessions over the drop threshold")
+            .tag("policy", "drop")
+            .register(meterRegistry);
+        this.coalesced = Counter.builder("chat.ws.outbound.dropped")
+            .description("Outbound frames dropped for sessions over the drop threshold")
+            .tag("policy", "coalesce")
+            .register(meterRegistry);
+        this.closedForDepth = Counter.builder("chat.ws.outbound.sessions.closed")
+            .description("Sessions closed because their outbound queue hit a hard limit")
+            .tag("reason", "queue")
+            .register(meterRegistry);
+        this.closedForSendTime = Counter.builder("chat.ws.outbound.sessions.closed")
+            .description("Sessions closed because their outbound queue hit a hard limit")
+            .tag("reason", "send-time")
+            .register(meterRegistry);
+        this.queueDepth = DistributionSummary.builder("chat.ws.outbound.queue.depth")
+            .description("Per-session outbound queue depth seen by each accepted frame")
+            .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queue.max", this, OutboundBackpressureGuard::maxQueueDepth)
+            .description("Deepest per-session outbound queue right now")
+            .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queued", this, OutboundBackpressureGuard::totalQueued)
+            .description("Outbound frames queued across all sessions")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Bọc handler WebSocket để biết session nào đang mở, cần cho việc đóng session vượt giới hạn.
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                Principal principal = session.getPrincipal();
+                sessions.put(session.getId(), new SessionQueue(session, principal != null ? principal.getName() : null));
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionQueue queue = sessions.remove(session.getId());
+                if (queue != null) {
+                    synchronized (queue) {
+                        queue.closed = true;
+                        queue.clear();
+                    }
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Độ sâu hàng đợi hiện tại của một session, tính cả frame đang ghi.
+     */
+    public int queueDepth(String sessionId) {
+        SessionQueue queue = sessions.get(sessionId);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.depth();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (Boolean.TRUE.equals(RELEASING.get())) {
+            return message;
+        }
+        SessionQueue queue = trackedQueue(message);
+        if (queue == null) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        boolean broadcastFrame = SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+            && destination != null;
+        String dropPrefix = broadcastFrame ? matchingPrefix(properties.getDropDestinations(), destination) : null;
+        String coalescePrefix = broadcastFrame ? matchingPrefix(properties.getCoalesceDestinations(), destination) : null;
+
+        String closeReason = null;
+        synchronized (queue) {
+            if (queue.closed) {
+                return null;
+            }
+            int depth = queue.depth();
+            if (queue.writing() && System.nanoTime() - queue.inFlightSince > sendTimeLimitNanos) {
+                closeReason = "send time limit";
+                closedForSendTime.increment();
+            } else if (depth >= properties.getDropThreshold() && (dropPrefix != null || coalescePrefix != null)) {
+                if (coalescePrefix != null) {
+                    queue.coalesced.add(coalescePrefix);
+                    coalesced.increment();
+                } else {
+                    dropped.increment();
+                }
+                return null;
+            } else if (depth >= properties.getMaxQueuedMessages()
+                    || queue.queuedBytes + payloadSize(message) > maxQueuedBytes) {
+                closeReason = "queue limit";
+                closedForDepth.increment();
+            } else {
+                queueDepth.record(depth);
+                if (!queue.inFlight) {
+                    queue.inFlight = true;
+                    queue.inFlightSince = 0;
+                    return message;
+                }
+                queue.pending.add(message);
+                queue.pendingSize = queue.pending.size();
+                queue.queuedBytes += payloadSize(message);
+                return null;
+            }
+            queue.closed = true;
+            log.warn("Closing slow WebSocket session {} of {}: {} ({} frames, {} bytes queued)",
+                queue.session.getId(), queue.username, closeReason, depth, queue.queuedBytes);
+            queue.clear();
+        }
+        close(queue.session);
+        return null;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        SessionQueue queue = trackedQueue(message);
+        if (queue != null) {
+            synchronized (queue) {
+                if (queue.inFlight) {
+                    queue.inFlightSince = System.nanoTime();
+                }
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Frame không vào được executor thì không bao giờ tới afterMessageHandled
+        if (!sent || ex != null) {
+            release(message, channel);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message, channel);
+    }
+
+    /**
+     * Frame đang ghi của session đã xong, thả frame kế tiếp. Mỗi session chỉ có một frame trong
+     * executor nên không cần so khớp chính xác message nào vừa xong.
+     */
+    private void release(Message<?> message, MessageChannel channel) {
+        SessionQueue queue = trackedQueue(message);
+        if (queue == null) {
+            return;
+        }
+        Message<?> next;
+        Set<String> drainedCoalesced = null;
+        synchronized (queue) {
+            if (!queue.inFlight) {
+                return;
+            }
+            next = queue.pending.poll();
+            queue.pendingSize = queue.pending.size();
+            if (next != null) {
+                queue.queuedBytes -= payloadSize(next);
+                queue.inFlightSince = 0;
+            } else {
+                queue.inFlight = false;
+                if (!queue.coalesced.isEmpty()) {
+                    drainedCoalesced = Set.copyOf(queue.coalesced);
+                    queue.coalesced.clear();
+                }
+            }
+        }
+        if (next != null) {
+            Boolean previous = RELEASING.get();
+            RELEASING.set(Boolean.TRUE);
+            try {
+                channel.send(next);
+            } catch (Exception e) {
+                // afterSendCompletion đã thả frame sau đó
+                log.warn("Error releasing outbound frame for session {}: {}", queue.session.getId(), e.getMessage());
+            } finally {
+                RELEASING.set(previous);
+            }
+        } else if (drainedCoalesced != null && queue.username != null) {
+            eventPublisher.publishEvent(new SessionBacklogDrainedEvent(queue.session.getId(), queue.username, drainedCoalesced));
+        }
+    }
+
+    private SessionQueue trackedQueue(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return null;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith(APP_DESTINATION_PREFIX)) {
+            return null;
+        }
+        return sessions.get(sessionId);
+    }
+
+    private static String matchingPrefix(List<String> prefixes, String destination) {
+        for (String prefix : prefixes) {
+            if (destination.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    private static int payloadSize(Message<?> message) {
+        return message.getPayload() instanceof byte[] bytes ? bytes.length : 0;
+    }
+
+    private static void close(WebSocketSession session) {
+        // Đóng ở thread riêng: luồng đang ghi bị treo có thể giữ khóa gửi của session
+        Thread.ofVirtual().name("ws-slow-consumer-close").start(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Error closing slow WebSocket session {}: {}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private double maxQueueDepth() {
+        int max = 0;
+        for (SessionQueue queue : sessions.values()) {
+            max = Math.max(max, queue.pendingSize);
+        }
+        return max;
+    }
+
+    private double totalQueued() {
+        long total = 0;
+        for (SessionQueue queue : sessions.values()) {
+            total += queue.pendingSize;
+        }
+        return total;
+    }
+
+    /**
+     * Trạng thái của một session, mọi truy cập đều nằm trong {@code synchronized (queue)} trừ
+     * {@code pendingSize} mà gauge đọc không khóa.
+     */
+    private static final class SessionQueue {
+        private final WebSocketSession session;
+        private final String username;
+        private final ArrayDeque<Message<?>> pending = new ArrayDeque<>();
+        private final Set<String> coalesced = new HashSet<>();
+        private volatile int pendingSize;
+        private long queuedBytes;
+        private boolean inFlight;
+        // 0 khi frame in-flight còn chờ thread của executor, chưa bắt đầu ghi
+        private long inFlightSince;
+        private boolean closed;
+
+        private SessionQueue(WebSocketSession session, String username) {
+            this.session = session;
+            this.username = username;
+        }
+
+        private boolean writing() {
+            return inFlight && inFlightSince != 0;
+        }
+
+        private int depth() {
+            return pending.size() + (inFlight ? 1 : 0);
+        }
+
+        private void clear() {
+            pending.clear();
+            pendingSize = 0;
+            coalesced.clear();
+            queuedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.PresenceProperties;
+import com.chat.messmini.dto.PresenceDelta;
+import com.chat.messmini.dto.PresenceSnapshot;
+import com.chat.messmini.event.PresenceChangedEvent;
+import com.chat.messmini.event.PresenceExpiredEvent;
+import com.chat.messmini.event.SessionBacklogDrainedEvent;
+import com.chat.messmini.util.ImmutableLongSet;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gom các transition online/offline trong một cửa sổ ngắn rồi gửi delta gọn đến
+ * {@code /user/queue/presence} của những bạn bè đang online của từng user thay đổi.
+ * Client lấy một snapshot bạn bè online qua {@code /app/presence} rồi áp các delta có
+ * {@code seq} lớn hơn seq cuối cùng đã thấy của cùng node gửi: delta tới từ mọi node qua broker,
+ * còn {@code seq} chỉ tăng đơn điệu trong một node nên mỗi frame mang theo {@code node}.
+ * Session bị bỏ delta do chậm nhận được một snapshot trên cùng queue để đồng bộ lại; hai loại
+ * frame phân biệt bằng trường {@code type}.
+ */
+@Service
+@Slf4j
+public class PresenceBroadcaster {
+
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceStore presenceStore;
+    private final UserSnapshotCache userSnapshotCache;
+    private final FriendshipService friendshipService;
+    private final PresenceProperties properties;
+    private final String nodeId;
+
+    private final Set<Long> pendingUserIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final DistributionSummary eventsPerBatch;
+    private final DistributionSummary changesPerBatch;
+    private final DistributionSummary recipientsPerBatch;
+    private ScheduledExecutorService scheduler;
+
+    public PresenceBroadcaster(SimpMessagingTemplate messagingTemplate,
+                               PresenceStore presenceStore,
+                               UserSnapshotCache userSnapshotCache,
+                               FriendshipService friendshipService,
+                               PresenceProperties properties,
+                               PresenceHeartbeat presenceHeartbeat,
+                               MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.presenceStore = presenceStore;
+        this.userSnapshotCache = userSnapshotCache;
+        this.friendshipService = friendshipService;
+        this.properties = properties;
+        this.nodeId = presenceHeartbeat.nodeId();
+        this.eventsPerBatch = DistributionSummary.builder("chat.presence.batch.events")
+            .description("Presence transitions received per broadcast window")
+            .register(meterRegistry);
+        this.changesPerBatch = DistributionSummary.builder("chat.presence.batch.changes")
+            .description("Users published per presence delta after coalescing")
+            .register(meterRegistry);
+        this.recipientsPerBatch = DistributionSummary.builder("chat.presence.batch.recipients")
+            .description("Online friends that received a presence delta per broadcast window")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowMillis = properties.getBroadcastWindow().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        pendingUserIds.add(event.getUserId());
+        pendingEvents.incrementAndGet();
+    }
+
+    /**
+     * User của một node đã chết: trạng thái offline được đọc lại từ store lúc flush như mọi
+     * transition khác.
+     */
+    @EventListener
+    public void onPresenceExpired(PresenceExpiredEvent event) {
+        pendingUserIds.addAll(event.getUserIds());
+        pendingEvents.addAndGet(event.getUserIds().size());
+    }
+
+    /**
+     * Session chậm đã bị bỏ bớt delta: khi hàng đợi của nó cạn, gửi một snapshot thay cho
+     * tất cả các delta đã bỏ, chỉ tới đúng session đó.
+     */
+    @EventListener
+    public void onSessionBacklogDrained(SessionBacklogDrainedEvent event) {
+        if (event.getCoalescedDestinations().contains(PRESENCE_QUEUE)) {
+            scheduler.execute(() -> resync(event.getSessionId(), event.getUsername()));
+        }
+    }
+
+    private void resync(String sessionId, String username) {
+        try {
+            userSnapshotCache.findByUsername(username).ifPresent(user -> {
+                SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                headers.setSessionId(sessionId);
+                headers.setLeaveMutable(true);
+                messagingTemplate.convertAndSendToUser(username, PRESENCE_QUEUE, snapshot(user.getId()),
+                    headers.getMessageHeaders());
+            });
+        } catch (Exception e) {
+            log.error("Error resyncing presence for session {}: {}", sessionId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Các bạn bè đang online của {@code userId}, kèm seq hiện tại của node này để client bỏ qua
+     * delta cũ của node này.
+     */
+    public PresenceSnapshot snapshot(Long userId) {
+        long seq = sequence.get();
+        ImmutableLongSet online = presenceStore.onlineAmong(friendshipService.getFriendIds(userId));
+        List<Long> onlineFriends = new ArrayList<>(online.size());
+        online.forEach(onlineFriends::add);
+        return new PresenceSnapshot(nodeId, seq, onlineFriends);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error broadcasting presence delta: {}", e.getMessage(), e);
+        }
+    }
+
+    void flush() {
+        if (pendingUserIds.isEmpty()) {
+            return;
+        }
+        int events = pendingEvents.getAndSet(0);
+
+        long seq = sequence.incrementAndGet();
+        int changes = 0;
+
+        // Trạng thái cuối cùng của mỗi user trong cửa sổ được đọc lại từ registry,
+        // sau đó gom theo từng người nhận là bạn bè đang online
+        Map<Long, PresenceDelta> deltas = new HashMap<>();
+        for (Iterator<Long> it = pendingUserIds.iterator(); it.hasNext(); ) {
+            Long userId = it.next();
+            it.remove();
+            changes++;
+            boolean online = presenceStore.isOnline(userId);
+            ImmutableLongSet onlineFriends = presenceStore.onlineAmong(friendshipService.getFriendIds(userId));
+            for (int i = 0; i < onlineFriends.size(); i++) {
+                long friendId = onlineFriends.get(i);
+                PresenceDelta delta = deltas.computeIfAbsent(friendId,
+                    id -> new PresenceDelta(nodeId, seq, new ArrayList<>(), new ArrayList<>()));
+                (online ? delta.getOnline() : delta.getOffline()).add(userId);
+            }
+        }
+
+        deltas.forEach((recipientId, delta) -> {
+            // Người nhận có thể đang kết nối với node khác, username lấy từ cache thay vì registry cục bộ
+            userSnapshotCache.findById(recipientId).ifPresent(recipient ->
+                messagingTemplate.convertAndSendToUser(recipient.getUsername(), PRESENCE_QUEUE, delta));
+        });
+
+        eventsPerBatch.record(events);
+        changesPerBatch.record(changes);
+        recipientsPerBatch.record(deltas.size());
+        log.debug("Presence delta {}: {} events coalesced into {} changes for {} recipients",
+            seq, events, changes, deltas.size());
+    }
+}
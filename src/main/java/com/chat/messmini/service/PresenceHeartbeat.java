@@ -0,0 +1,116 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.PresenceProperties;
+import com.chat.messmini.event.PresenceChangedEvent;
+import com.chat.messmini.event.PresenceExpiredEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đồng bộ các session cục bộ của {@link PresenceRegistry} lên {@link PresenceStore}: ghi ngay
+ * mỗi transition online/offline của node này, và định kỳ gửi số session của từng user để gia hạn
+ * TTL. Không có ghi DB nào trên đường connect/disconnect.
+ * <p>
+ * Mỗi nhịp heartbeat cũng quét các user mà entry cuối cùng đã hết hạn (node của họ chết) và phát
+ * {@link PresenceExpiredEvent} để bạn bè nhận delta offline như với một lần ngắt kết nối thường.
+ */
+@Component
+@Slf4j
+public class PresenceHeartbeat {
+
+    private final PresenceRegistry presenceRegistry;
+    private final PresenceStore presenceStore;
+    private final PresenceProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+
+    private ScheduledExecutorService scheduler;
+
+    public PresenceHeartbeat(PresenceRegistry presenceRegistry,
+                             PresenceStore presenceStore,
+                             PresenceProperties properties,
+                             ApplicationEventPublisher eventPublisher) {
+        this.presenceRegistry = presenceRegistry;
+        this.presenceStore = presenceStore;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.nodeId = StringUtils.hasText(properties.getNodeId())
+            ? properties.getNodeId()
+            : UUID.randomUUID().toString();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.getHeartbeatInterval().compareTo(properties.getTtl()) >= 0) {
+            log.warn("Presence heartbeat interval {} is not shorter than TTL {}, users may flap offline",
+                properties.getHeartbeatInterval(), properties.getTtl());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getHeartbeatInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::heartbeatSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Presence heartbeat started: node={}, store={}, interval={}, ttl={}",
+            nodeId, properties.getStore(), properties.getHeartbeatInterval(), properties.getTtl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            presenceStore.removeNode(nodeId, presenceRegistry.onlineUserIds());
+        } catch (Exception e) {
+            log.warn("Could not remove node {} from presence store, entries expire after TTL: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Chạy trước các listener khác để ai hỏi {@link PresenceStore} sau transition đều thấy nó.
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        try {
+            presenceStore.sessionsChanged(nodeId, event.getUserId(), presenceRegistry.sessionCount(event.getUserId()));
+        } catch (Exception e) {
+            // Heartbeat kế tiếp (hoặc TTL) sẽ đưa store về đúng trạng thái
+            log.warn("Could not update presence of user {}: {}", event.getUserId(), e.getMessage());
+        }
+    }
+
+    private void heartbeatSafely() {
+        try {
+            presenceStore.heartbeat(nodeId, presenceRegistry.sessionCounts());
+        } catch (Exception e) {
+            log.error("Error sending presence heartbeat: {}", e.getMessage(), e);
+        }
+        try {
+            List<Long> expired = presenceStore.sweepExpired();
+            if (!expired.isEmpty()) {
+                log.info("Presence of {} users expired without a disconnect, publishing offline", expired.size());
+                eventPublisher.publishEvent(new PresenceExpiredEvent(expired));
+            }
+        } catch (Exception e) {
+            log.error("Error sweeping expired presence: {}", e.getMessage(), e);
+        }
+    }
+}
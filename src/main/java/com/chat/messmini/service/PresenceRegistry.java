@@ -0,0 +1,153 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.event.PresenceChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nguồn duy nhất về các session trên node này: chỉ mục session -> user và bộ đếm
+ * session của từng user. Trạng thái online trên toàn cụm nằm ở {@link PresenceStore}.
+ * Connect/disconnect đều là O(1) và chỉ dùng CAS trên bộ đếm của user, không ghi DB: transition
+ * online/offline được quyết định bởi chính CAS đó rồi phát ra dưới dạng {@link PresenceChangedEvent}.
+ * Bộ đếm về 0 là trạng thái cuối: entry đó không bao giờ được dùng lại, connect sau đó tạo entry mới,
+ * nên mỗi transition online ghép đúng một transition offline.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceRegistry {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    private final Map<Long, UserSessions> users = new ConcurrentHashMap<>();
+
+    /**
+     * Đăng ký một session. Gọi lại với cùng sessionId không có tác dụng.
+     */
+    public void sessionConnected(String sessionId, Long userId, String username) {
+        if (sessionUsers.putIfAbsent(sessionId, userId) != null) {
+            return;
+        }
+        while (true) {
+            UserSessions sessions = users.get(userId);
+            if (sessions == null) {
+                if (users.putIfAbsent(userId, new UserSessions(username)) == null) {
+                    log.debug("Session {} connected for user {} (1 sessions)", sessionId, userId);
+                    eventPublisher.publishEvent(new PresenceChangedEvent(userId, username, true));
+                    return;
+                }
+                continue;
+            }
+            int count = sessions.count.get();
+            if (count == 0) {
+                // Entry đã bị disconnect cuối thu hồi nhưng chưa kịp gỡ khỏi map: gỡ giúp rồi thử lại
+                users.remove(userId, sessions);
+                continue;
+            }
+            if (sessions.count.compareAndSet(count, count + 1)) {
+                log.debug("Session {} connected for user {} ({} sessions)", sessionId, userId, count + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hủy đăng ký một session. Trả về userId của session, hoặc null nếu session không được biết.
+     */
+    public Long sessionDisconnected(String sessionId) {
+        Long userId = sessionUsers.remove(sessionId);
+        if (userId == null) {
+            return null;
+        }
+        UserSessions sessions = users.get(userId);
+        if (sessions == null) {
+            return userId;
+        }
+        // Session này giữ một đơn vị của bộ đếm nên entry không thể bị thu hồi trước lần giảm này
+        int remaining = sessions.count.decrementAndGet();
+        log.debug("Session {} disconnected for user {} ({} sessions left)", sessionId, userId, remaining);
+        if (remaining == 0) {
+            users.remove(userId, sessions);
+            // Connect mới có thể đã tạo entry mới và phát online trước event này; listener đọc lại
+            // trạng thái hiện tại thay vì tin vào thứ tự event
+            eventPublisher.publishEvent(new PresenceChangedEvent(userId, sessions.username, false));
+        }
+        return userId;
+    }
+
+    public boolean isOnline(Long userId) {
+        UserSessions sessions = users.get(userId);
+        return sessions != null && sessions.count.get() > 0;
+    }
+
+    public int sessionCount(Long userId) {
+        UserSessions sessions = users.get(userId);
+        return sessions != null ? sessions.count.get() : 0;
+    }
+
+    public Long userIdOf(String sessionId) {
+        return sessionUsers.get(sessionId);
+    }
+
+    /**
+     * Username của user đang online, hoặc null nếu user không có session nào trên node này.
+     */
+    public String usernameOf(Long userId) {
+        UserSessions sessions = users.get(userId);
+        return sessions != null && sessions.count.get() > 0 ? sessions.username : null;
+    }
+
+    public List<Long> onlineUserIds() {
+        List<Long> ids = new ArrayList<>(users.size());
+        users.forEach((userId, sessions) -> {
+            if (sessions.count.get() > 0) {
+                ids.add(userId);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Số session hiện tại của mỗi user online trên node này, dùng cho heartbeat của presence store.
+     */
+    public Map<Long, Integer> sessionCounts() {
+        Map<Long, Integer> counts = new HashMap<>(users.size() * 2);
+        users.forEach((userId, sessions) -> {
+            int count = sessions.count.get();
+            if (count > 0) {
+                counts.put(userId, count);
+            }
+        });
+        return counts;
+    }
+
+    public int onlineUserCount() {
+        return users.size();
+    }
+
+    public int sessionCount() {
+        return sessionUsers.size();
+    }
+
+    /**
+     * Bộ đếm chỉ đi qua 0 một lần: entry có bộ đếm 0 đã bị thu hồi và đang chờ gỡ khỏi map.
+     */
+    private static final class UserSessions {
+        private final String username;
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        private UserSessions(String username) {
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.util.ImmutableLongSet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trạng thái online dùng chung cho mọi node. Mỗi node ghi các user đang có session trên nó
+ * (ngay khi có transition và định kỳ qua heartbeat); một entry (user, node) không được làm mới
+ * trong khoảng TTL thì hết hạn, nên user của một node đã chết tự trở về offline.
+ * <p>
+ * {@link PresenceRegistry} vẫn là nguồn cho các session cục bộ; các câu hỏi "user X có online ở
+ * đâu đó không" và "bạn bè nào của X đang online" được trả lời từ đây.
+ */
+public interface PresenceStore {
+
+    /** Số session của {@code userId} trên {@code nodeId} vừa đổi; 0 nghĩa là user rời node. */
+    void sessionsChanged(String nodeId, long userId, int sessions);
+
+    /** Làm mới TTL cho mọi user đang có session trên node, kèm số session của từng user. */
+    void heartbeat(String nodeId, Map<Long, Integer> sessionCounts);
+
+    /**
+     * Node dừng có kiểm soát: gỡ ngay các user của nó thay vì chờ hết TTL. Với store dùng chung,
+     * user không còn ở node nào khác sẽ được {@link #sweepExpired} kế tiếp của một node còn sống
+     * trả về, để bạn bè của họ nhận delta offline.
+     */
+    void removeNode(String nodeId, Collection<Long> userIds);
+
+    /**
+     * Gỡ các user không còn entry nào còn hạn trên bất kỳ node nào và trả về họ, để phát delta
+     * offline cho user của một node đã chết. User rời node cuối cùng qua {@link #sessionsChanged}
+     * không được trả về (node đó đã phát transition), và khi nhiều node cùng quét thì mỗi user
+     * chỉ được trả về cho một node.
+     */
+    List<Long> sweepExpired();
+
+    boolean isOnline(long userId);
+
+    /** Các phần tử của {@code userIds} đang online trên ít nhất một node. */
+    ImmutableLongSet onlineAmong(ImmutableLongSet userIds);
+
+    List<Long> onlineUserIds();
+
+    /** Số user đang online, có thể xấp xỉ; dùng cho gauge nên phải rẻ. */
+    long onlineCount();
+}
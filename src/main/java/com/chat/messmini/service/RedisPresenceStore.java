@@ -0,0 +1,204 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.PresenceProperties;
+import com.chat.messmini.util.ImmutableLongSet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link PresenceStore} trên Redis, dùng chung cho mọi node.
+ * <p>
+ * Mỗi user có một sorted set {@code messmini:{presence}:user:<id>}: member là node id, score là
+ * thời điểm hết hạn (epoch millis). "Online ở đâu đó" là {@code ZCOUNT key now +inf > 0}, nên
+ * member của node đã chết tự mất hiệu lực khi quá hạn mà không cần ai xóa; heartbeat của các node
+ * còn sống dọn chúng đi và gia hạn TTL của key. Sorted set {@code messmini:{presence}:users}
+ * (member là user id, score là hạn muộn nhất) chỉ dùng để liệt kê user online.
+ * Các truy vấn nhiều user được gửi theo pipeline: một round trip cho cả danh sách bạn bè.
+ * <p>
+ * User chỉ bị gỡ khỏi tập toàn cục bằng một script kiểm tra-rồi-xóa nguyên tử ({@link #REMOVE_IF_GONE}):
+ * khi rời node cuối cùng, hoặc khi heartbeat của một node bất kỳ thấy hạn muộn nhất đã qua. Script
+ * trả về 1 cho đúng một lời gọi, nên delta offline của user thuộc node đã chết chỉ được phát một lần.
+ * Node dừng có kiểm soát không tự phát được delta (broadcaster của nó đã dừng): {@link #REMOVE_NODE}
+ * hạ hạn của user không còn node nào xuống hiện tại, để lần quét kế tiếp của một node còn sống phát
+ * offline thay vì chờ hết TTL.
+ * <p>
+ * Mọi key dùng chung hash tag {@code {presence}} nên nằm cùng một slot trên Redis Cluster; các
+ * script đụng tới cả tập toàn cục lẫn set của user nhờ vậy chạy được trên cluster.
+ */
+@Component
+@ConditionalOnProperty(prefix = "messmini.presence", name = "store", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisPresenceStore implements PresenceStore {
+
+    private static final String USER_KEY_PREFIX = "messmini:{presence}:user:";
+    private static final String ONLINE_USERS_KEY = "messmini:{presence}:users";
+
+    // KEYS[1] = tập toàn cục, KEYS[2] = set của user; ARGV[1] = user id, ARGV[2] = now.
+    // Gỡ user khỏi tập toàn cục nếu không còn node nào còn hạn; connect chen vào sau sẽ ZADD lại
+    private static final RedisScript<Long> REMOVE_IF_GONE = new DefaultRedisScript<>(
+        "if redis.call('ZCOUNT', KEYS[2], ARGV[2], '+inf') > 0 then return 0 end " +
+        "return redis.call('ZREM', KEYS[1], ARGV[1])", Long.class);
+
+    // KEYS như trên; ARGV[1] = user id, ARGV[2] = now, ARGV[3] = node id.
+    // Gỡ node khỏi set của user; nếu không còn node nào còn hạn thì hạ hạn trong tập toàn cục
+    // xuống now (XX: không thêm user đã bị gỡ) để sweepExpired của node khác nhặt được ngay
+    private static final String REMOVE_NODE =
+        "redis.call('ZREM', KEYS[2], ARGV[3]) " +
+        "if redis.call('ZCOUNT', KEYS[2], ARGV[2], '+inf') > 0 then return 0 end " +
+        "return redis.call('ZADD', KEYS[1], 'XX', 'CH', ARGV[2], ARGV[1])";
+
+    private final StringRedisTemplate redisTemplate;
+    private final PresenceProperties properties;
+
+    @Override
+    public void sessionsChanged(String nodeId, long userId, int sessions) {
+        if (sessions > 0) {
+            refresh(nodeId, List.of(userId));
+        } else {
+            redisTemplate.opsForZSet().remove(userKey(userId), nodeId);
+            removeIfGone(userId, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Map<Long, Integer> sessionCounts) {
+        List<Long> userIds = new ArrayList<>(sessionCounts.size());
+        sessionCounts.forEach((userId, sessions) -> {
+            if (sessions > 0) {
+                userIds.add(userId);
+            }
+        });
+        refresh(nodeId, userIds);
+    }
+
+    @Override
+    public List<Long> sweepExpired() {
+        long now = System.currentTimeMillis();
+        Set<String> candidates = redisTemplate.opsForZSet().rangeByScore(ONLINE_USERS_KEY, Double.NEGATIVE_INFINITY, now);
+        if (candidates == null || candidates.isEmpty()) {
+            return List.of();
+        }
+        List<Long> expired = new ArrayList<>();
+        for (String member : candidates) {
+            long userId = Long.parseLong(member);
+            if (removeIfGone(userId, now)) {
+                expired.add(userId);
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public void removeNode(String nodeId, Collection<Long> userIds) {
+        String now = Long.toString(System.currentTimeMillis());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            userIds.forEach(userId -> redis.eval(REMOVE_NODE, ReturnType.INTEGER, 2,
+                ONLINE_USERS_KEY, userKey(userId), userId.toString(), now, nodeId));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isOnline(long userId) {
+        Long count = redisTemplate.opsForZSet().count(userKey(userId), System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public ImmutableLongSet onlineAmong(ImmutableLongSet userIds) {
+        if (userIds.isEmpty()) {
+            return userIds;
+        }
+        long now = System.currentTimeMillis();
+        List<Object> counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int i = 0; i < userIds.size(); i++) {
+                redis.zCount(userKey(userIds.get(i)), now, Double.POSITIVE_INFINITY);
+            }
+            return null;
+        });
+        long[] online = new long[userIds.size()];
+        int found = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            if (counts.get(i) instanceof Long count && count > 0) {
+                online[found++] = userIds.get(i);
+            }
+        }
+        return found == userIds.size() ? userIds : ImmutableLongSet.of(Arrays.copyOf(online, found));
+    }
+
+    @Override
+    public List<Long> onlineUserIds() {
+        Set<String> members = redisTemplate.opsForZSet()
+            .rangeByScore(ONLINE_USERS_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        if (members == null || members.isEmpty()) {
+            return List.of();
+        }
+        long[] candidates = members.stream().mapToLong(Long::parseLong).toArray();
+        // Tập toàn cục chỉ hết hạn theo TTL; xác nhận lại từng user bằng set riêng của họ
+        ImmutableLongSet online = onlineAmong(ImmutableLongSet.of(candidates));
+        List<Long> ids = new ArrayList<>(online.size());
+        online.forEach(ids::add);
+        return ids;
+    }
+
+    /**
+     * Chỉ đếm trên tập toàn cục (một ZCOUNT), không xác nhận lại từng user như
+     * {@link #onlineUserIds()}: user vừa rời node cuối cùng có thể còn được tính tới hết TTL.
+     */
+    @Override
+    public long onlineCount() {
+        Long count = redisTemplate.opsForZSet()
+            .count(ONLINE_USERS_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return count != null ? count : 0;
+    }
+
+    private void refresh(String nodeId, List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        long ttlMillis = properties.getTtl().toMillis();
+        long now = System.currentTimeMillis();
+        double expiresAt = now + ttlMillis;
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Long userId : userIds) {
+                String key = userKey(userId);
+                redis.zAdd(key, expiresAt, nodeId);
+                redis.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, now);
+                redis.pExpire(key, ttlMillis);
+                redis.zAdd(ONLINE_USERS_KEY, expiresAt, userId.toString(), RedisZSetCommands.ZAddArgs.empty().gt());
+            }
+            return null;
+        });
+        log.trace("Refreshed presence of {} users on node {}", userIds.size(), nodeId);
+    }
+
+    private boolean removeIfGone(long userId, long now) {
+        Long removed = redisTemplate.execute(REMOVE_IF_GONE, List.of(ONLINE_USERS_KEY, userKey(userId)),
+            Long.toString(userId), Long.toString(now));
+        return removed != null && removed > 0;
+    }
+
+    private static String userKey(long userId) {
+        return USER_KEY_PREFIX + userId;
+    }
+}
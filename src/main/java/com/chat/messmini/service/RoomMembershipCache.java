@@ -0,0 +1,111 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.RoomCacheProperties;
+import com.chat.messmini.event.RoomDeletedEvent;
+import com.chat.messmini.event.RoomMembershipChangedEvent;
+import com.chat.messmini.repository.ChatRoomRepository;
+import com.chat.messmini.util.ImmutableLongSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thành viên của các phòng: room id → tập id thành viên dạng primitive.
+ * <p>
+ * Tập của một phòng được nạp ở lần gửi đầu tiên bằng một truy vấn chỉ lấy id trên bảng
+ * {@code chat_room_members}, sau đó được cập nhật tại chỗ bởi {@link RoomMembershipChangedEvent}
+ * và {@link RoomDeletedEvent} sau commit. Kiểm tra quyền gửi và danh sách người nhận fan-out vì
+ * vậy không chạm tới bảng join trên đường gửi tin. Cùng cơ chế thế hệ như {@link FriendGraphCache}
+ * để kết quả nạp song song với một thay đổi không bị giữ lại.
+ * <p>
+ * Cache giới hạn theo số phòng và bỏ phòng lâu không dùng ({@code messmini.cache.rooms.*}),
+ * số liệu xuất qua Micrometer với {@code cache="rooms.members"}.
+ */
+@Component
+@Slf4j
+public class RoomMembershipCache {
+
+    private final ChatRoomRepository chatRoomRepository;
+
+    private final Cache<Long, ImmutableLongSet> cache;
+    private final ConcurrentMap<Long, ImmutableLongSet> members;
+    private final AtomicLong generation = new AtomicLong();
+
+    public RoomMembershipCache(ChatRoomRepository chatRoomRepository,
+                               RoomCacheProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(properties.getExpireAfterAccess())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rooms.members");
+        this.members = cache.asMap();
+    }
+
+    public ImmutableLongSet membersOf(Long roomId) {
+        ImmutableLongSet cached = cache.getIfPresent(roomId);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = generation.get();
+        ImmutableLongSet loaded = ImmutableLongSet.of(chatRoomRepository.findMemberIds(roomId));
+        if (loaded.isEmpty()) {
+            // Phòng không tồn tại (hoặc đã hết thành viên): không giữ để id lạ không làm phình cache
+            return loaded;
+        }
+        ImmutableLongSet raced = members.putIfAbsent(roomId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        if (generation.get() != loadGeneration) {
+            members.remove(roomId, loaded);
+        }
+        return loaded;
+    }
+
+    public boolean isMember(Long roomId, Long userId) {
+        return membersOf(roomId).contains(userId);
+    }
+
+    public void evict(Long roomId) {
+        members.remove(roomId);
+    }
+
+    public long cachedRoomCount() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onMembershipChanged(RoomMembershipChangedEvent event) {
+        generation.incrementAndGet();
+        // Phòng chưa có trong cache sẽ được nạp đầy đủ ở lần dùng sau
+        members.computeIfPresent(event.getRoomId(), (id, current) -> {
+            ImmutableLongSet next = current;
+            for (Long userId : event.getUserIds()) {
+                next = event.isMember() ? next.with(userId) : next.without(userId);
+            }
+            return next.isEmpty() ? null : next;
+        });
+        log.debug("Room {} membership updated: {} member={}", event.getRoomId(), event.getUserIds(), event.isMember());
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRoomDeleted(RoomDeletedEvent event) {
+        generation.incrementAndGet();
+        evict(event.getRoomId());
+    }
+}
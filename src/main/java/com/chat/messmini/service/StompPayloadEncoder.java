@@ -0,0 +1,40 @@
+package com.chat.messmini.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Serialize payload JSON đúng một lần thành {@code byte[]} và bọc trong một {@link Message}
+ * bất biến có sẵn content-type.
+ * <p>
+ * Gửi message này bằng {@code SimpMessagingTemplate.send(destination, message)} bỏ qua bước
+ * convert: template chỉ copy header để gắn destination, còn mảng byte được dùng lại nguyên vẹn
+ * cho mọi destination và mọi subscriber mà broker fan-out tới.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompPayloadEncoder {
+
+    private final ObjectMapper objectMapper;
+
+    public Message<byte[]> encode(Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+}
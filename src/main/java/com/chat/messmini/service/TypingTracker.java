@@ -0,0 +1,194 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.TypingProperties;
+import com.chat.messmini.event.PresenceChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trạng thái "đang gõ" theo từng cặp (người gửi, người nhận), hoàn toàn trong bộ nhớ.
+ * <p>
+ * Client gửi frame theo phím gõ; tracker chỉ chuyển tiếp khi trạng thái đổi (bắt đầu / dừng),
+ * các frame lặp lại chỉ gia hạn TTL. Hai frame liên tiếp cho cùng một cặp cách nhau ít nhất
+ * {@code min-frame-interval}: thay đổi đến sớm hơn được giữ lại và gửi ở lần quét sau, nên bật/tắt
+ * liên tục chỉ còn trạng thái cuối. Chỉ báo không được gia hạn sẽ tự tắt sau {@code ttl}, kể cả
+ * khi client mất kết nối mà chưa gửi "dừng".
+ * <p>
+ * Không có truy vấn DB nào trên đường này, và frame gửi tới {@link #TYPING_QUEUE} thuộc loại bỏ
+ * được của {@link OutboundBackpressureGuard}, nên typing không làm chậm tin nhắn thật.
+ */
+@Component
+@Slf4j
+public class TypingTracker {
+
+    public static final String TYPING_QUEUE = "/queue/typing";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long ttlNanos;
+    private final long minFrameIntervalNanos;
+    private final long sweepIntervalMillis;
+
+    private final Map<Pair, State> states = new ConcurrentHashMap<>();
+
+    private final Counter updates;
+    private final Counter framesSent;
+    private final Counter expired;
+    private ScheduledExecutorService scheduler;
+
+    public TypingTracker(SimpMessagingTemplate messagingTemplate,
+                         TypingProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.ttlNanos = properties.getTtl().toNanos();
+        this.minFrameIntervalNanos = properties.getMinFrameInterval().toNanos();
+        this.sweepIntervalMillis = properties.getSweepInterval().toMillis();
+        this.updates = Counter.builder("chat.typing.updates")
+            .description("Typing frames received from clients")
+            .register(meterRegistry);
+        this.framesSent = Counter.builder("chat.typing.frames")
+            .description("Typing state changes forwarded to receivers")
+            .register(meterRegistry);
+        this.expired = Counter.builder("chat.typing.expired")
+            .description("Typing indicators switched off by the server after the TTL")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweepSafely, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void update(String sender, String receiver, boolean typing) {
+        updates.increment();
+        long now = System.nanoTime();
+        Boolean[] frame = new Boolean[1];
+        states.compute(new Pair(sender, receiver), (pair, state) -> {
+            if (state == null) {
+                if (!typing) {
+                    return null;
+                }
+                state = new State();
+            }
+            state.typing = typing;
+            if (typing) {
+                state.expiresAt = now + ttlNanos;
+            }
+            frame[0] = state.takeFrame(now, minFrameIntervalNanos);
+            return state.isIdle() ? null : state;
+        });
+        if (frame[0] != null) {
+            send(sender, receiver, frame[0]);
+        }
+    }
+
+    /**
+     * Người gửi offline: tắt ngay mọi chỉ báo của họ thay vì chờ TTL.
+     */
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        if (event.isOnline()) {
+            return;
+        }
+        for (Pair pair : states.keySet()) {
+            if (pair.sender.equals(event.getUsername())) {
+                update(pair.sender, pair.receiver, false);
+            }
+        }
+    }
+
+    public int activeCount() {
+        return states.size();
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("Error sweeping typing indicators: {}", e.getMessage(), e);
+        }
+    }
+
+    void sweep() {
+        long now = System.nanoTime();
+        List<Pair> stopped = new ArrayList<>();
+        List<Pair> started = new ArrayList<>();
+        for (Pair key : states.keySet()) {
+            states.computeIfPresent(key, (pair, state) -> {
+                if (state.typing && now - state.expiresAt >= 0) {
+                    state.typing = false;
+                    expired.increment();
+                }
+                Boolean frame = state.takeFrame(now, minFrameIntervalNanos);
+                if (frame != null) {
+                    (frame ? started : stopped).add(pair);
+                }
+                return state.isIdle() ? null : state;
+            });
+        }
+        started.forEach(pair -> send(pair.sender, pair.receiver, true));
+        stopped.forEach(pair -> send(pair.sender, pair.receiver, false));
+    }
+
+    private void send(String sender, String receiver, boolean typing) {
+        framesSent.increment();
+        messagingTemplate.convertAndSendToUser(receiver, TYPING_QUEUE, Map.of("sender", sender, "typing", typing));
+    }
+
+    private record Pair(String sender, String receiver) {
+    }
+
+    /**
+     * Chỉ được đọc/ghi bên trong {@code compute} của map nên không cần khóa riêng.
+     */
+    private static final class State {
+        private boolean typing;
+        private boolean sentTyping;
+        private long expiresAt;
+        private long lastSentAt;
+        private boolean everSent;
+
+        /**
+         * Trạng thái cần gửi cho người nhận, hoặc null nếu không đổi hay chưa tới lượt gửi.
+         */
+        private Boolean takeFrame(long now, long minIntervalNanos) {
+            if (typing == sentTyping) {
+                return null;
+            }
+            if (everSent && now - lastSentAt < minIntervalNanos) {
+                return null;
+            }
+            sentTyping = typing;
+            lastSentAt = now;
+            everSent = true;
+            return typing;
+        }
+
+        private boolean isIdle() {
+            return !typing && !sentTyping;
+        }
+    }
+}
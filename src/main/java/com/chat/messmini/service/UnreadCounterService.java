@@ -0,0 +1,269 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.UnreadCacheProperties;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.dto.UnreadSnapshot;
+import com.chat.messmini.dto.UnreadUpdate;
+import com.chat.messmini.event.PresenceChangedEvent;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.event.PrivateMessagesReadEvent;
+import com.chat.messmini.event.RoomMessageSentEvent;
+import com.chat.messmini.event.RoomReadEvent;
+import com.chat.messmini.repository.MessageRepository;
+import com.chat.messmini.repository.RoomMessageRepository;
+import com.chat.messmini.util.ImmutableLongSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bộ đếm tin chưa đọc trong bộ nhớ theo user, theo cuộc trò chuyện riêng và theo phòng.
+ * <p>
+ * Bộ đếm của một user được dựng lại từ DB (hai truy vấn GROUP BY) ở lần đầu cần đến, sau đó chỉ
+ * được cộng/trừ bởi các sự kiện gửi và đọc tin nhắn; mỗi thay đổi được đẩy tới
+ * {@code /user/queue/unread}. Sự kiện cho user chưa có bộ đếm được bỏ qua: lần cần đến sau sẽ dựng
+ * lại từ DB. Bộ đếm bị bỏ khi user offline, và nằm trong một cache Caffeine giới hạn theo số user
+ * ({@code messmini.cache.unread.*}) để bộ đếm nạp qua REST của user không mở WebSocket cũng được dọn.
+ * <p>
+ * Khi chạy nhiều node, bộ đếm chỉ nhận sự kiện phát trên node của mình nên lệch với tin gửi/đọc
+ * ở node khác; {@code expire-after-write} buộc nạp lại định kỳ và là giới hạn của độ lệch đó.
+ * <p>
+ * Sự kiện tới trong lúc đang nạp thì không biết đã nằm trong kết quả truy vấn hay chưa (nó được
+ * phát sau commit, có thể trước hoặc sau lúc đọc). Vì vậy bộ đếm được đặt vào map ở trạng thái
+ * đang nạp trước khi truy vấn; sự kiện gặp trạng thái đó chỉ đánh dấu bộ đếm là cũ, và kết quả nạp
+ * bị cũ không được giữ lại: lần cần đến sau sẽ nạp lại từ DB thay vì cộng trùng hoặc mất một delta.
+ */
+@Service
+@Slf4j
+public class UnreadCounterService {
+
+    private final MessageRepository messageRepository;
+    private final RoomMessageRepository roomMessageRepository;
+    private final PresenceRegistry presenceRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final Cache<Long, UserCounters> cache;
+    private final ConcurrentMap<Long, UserCounters> counters;
+
+    public UnreadCounterService(MessageRepository messageRepository,
+                                RoomMessageRepository roomMessageRepository,
+                                PresenceRegistry presenceRegistry,
+                                SimpMessagingTemplate messagingTemplate,
+                                UnreadCacheProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.roomMessageRepository = roomMessageRepository;
+        this.presenceRegistry = presenceRegistry;
+        this.messagingTemplate = messagingTemplate;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterAccess(properties.getExpireAfterAccess())
+            .expireAfterWrite(properties.getExpireAfterWrite())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "unread.counters");
+        // Dùng qua asMap: putIfAbsent/remove(key, value) giữ nguyên giao thức nạp ở countersOf
+        this.counters = cache.asMap();
+    }
+
+    @Transactional(readOnly = true)
+    public UnreadSnapshot snapshot(Long userId) {
+        UserCounters userCounters = countersOf(userId);
+        return new UnreadSnapshot(
+            toMap(userCounters.conversations),
+            toMap(userCounters.rooms),
+            userCounters.totalPrivate()
+        );
+    }
+
+    @Transactional(readOnly = true)
+    public int roomUnread(Long userId, Long roomId) {
+        AtomicInteger count = countersOf(userId).rooms.get(roomId);
+        return count != null ? count.get() : 0;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrivateMessagePersisted(PrivateMessagePersistedEvent event) {
+        PersistedMessage message = event.getMessage();
+        UserCounters userCounters = liveCounters(message.getReceiverId());
+        if (userCounters == null) {
+            return;
+        }
+        int count = userCounters.conversations
+            .computeIfAbsent(message.getSenderId(), id -> new AtomicInteger())
+            .incrementAndGet();
+        push(message.getReceiverId(), new UnreadUpdate(
+            UnreadUpdate.CONVERSATION, message.getSenderId(), count, userCounters.totalPrivate()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrivateMessagesRead(PrivateMessagesReadEvent event) {
+        UserCounters userCounters = liveCounters(event.getReaderId());
+        if (userCounters == null || event.getCount() == 0) {
+            return;
+        }
+        int count = decrement(userCounters.conversations, event.getPeerId(), event.getCount());
+        push(event.getReaderId(), new UnreadUpdate(
+            UnreadUpdate.CONVERSATION, event.getPeerId(), count, userCounters.totalPrivate()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomMessageSent(RoomMessageSentEvent event) {
+        // O(số thành viên) phép tra map, không truy vấn DB
+        ImmutableLongSet memberIds = event.getMemberIds();
+        for (int i = 0; i < memberIds.size(); i++) {
+            long memberId = memberIds.get(i);
+            if (memberId == event.getSenderId()) {
+                continue;
+            }
+            UserCounters userCounters = liveCounters(memberId);
+            if (userCounters == null) {
+                continue;
+            }
+            int count = userCounters.rooms
+                .computeIfAbsent(event.getRoomId(), id -> new AtomicInteger())
+                .incrementAndGet();
+            push(memberId, new UnreadUpdate(
+                UnreadUpdate.ROOM, event.getRoomId(), count, userCounters.totalPrivate()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomRead(RoomReadEvent event) {
+        UserCounters userCounters = liveCounters(event.getUserId());
+        if (userCounters == null) {
+            return;
+        }
+        // Watermark đã lên tới tin mới nhất nên phòng không còn tin chưa đọc
+        if (userCounters.rooms.remove(event.getRoomId()) != null) {
+            push(event.getUserId(), new UnreadUpdate(
+                UnreadUpdate.ROOM, event.getRoomId(), 0, userCounters.totalPrivate()));
+        }
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        if (!event.isOnline() && !presenceRegistry.isOnline(event.getUserId())) {
+            counters.remove(event.getUserId());
+        }
+    }
+
+    public long cachedUserCount() {
+        // Eviction của Caffeine chạy bất đồng bộ: dọn trước để số đếm không vượt giới hạn
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private UserCounters countersOf(Long userId) {
+        UserCounters existing = counters.get(userId);
+        if (existing != null && existing.loaded) {
+            return existing;
+        }
+        UserCounters loading = new UserCounters();
+        if (existing != null || counters.putIfAbsent(userId, loading) != null) {
+            // Thread khác đang nạp: trả kết quả đọc từ DB mà không đưa vào cache
+            return load(userId, new UserCounters());
+        }
+        // Truy vấn DB nằm ngoài map để không khóa bucket của map trong lúc chờ I/O
+        try {
+            load(userId, loading);
+        } catch (RuntimeException e) {
+            counters.remove(userId, loading);
+            throw e;
+        }
+        synchronized (loading) {
+            if (loading.stale) {
+                counters.remove(userId, loading);
+                log.debug("Unread counters of user {} changed while loading, not cached", userId);
+            } else {
+                loading.loaded = true;
+            }
+        }
+        return loading;
+    }
+
+    /**
+     * Bộ đếm đã nạp xong của user để áp một delta, hoặc {@code null} nếu không có. Bộ đếm đang nạp
+     * bị đánh dấu cũ để kết quả nạp không được giữ lại.
+     */
+    private UserCounters liveCounters(Long userId) {
+        UserCounters userCounters = counters.get(userId);
+        if (userCounters == null || userCounters.loaded) {
+            return userCounters;
+        }
+        synchronized (userCounters) {
+            if (!userCounters.loaded) {
+                userCounters.stale = true;
+                return null;
+            }
+        }
+        return userCounters;
+    }
+
+    private UserCounters load(Long userId, UserCounters userCounters) {
+        for (Object[] row : messageRepository.countUnreadBySender(userId)) {
+            userCounters.conversations.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+        }
+        for (Object[] row : roomMessageRepository.countUnreadByRoom(userId)) {
+            userCounters.rooms.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+        }
+        log.debug("Loaded unread counters for user {}: {} conversations, {} rooms",
+            userId, userCounters.conversations.size(), userCounters.rooms.size());
+        return userCounters;
+    }
+
+    private void push(Long userId, UnreadUpdate update) {
+        String username = presenceRegistry.usernameOf(userId);
+        if (username != null) {
+            messagingTemplate.convertAndSendToUser(username, "/queue/unread", update);
+        }
+    }
+
+    private static int decrement(ConcurrentMap<Long, AtomicInteger> map, Long key, int delta) {
+        AtomicInteger count = map.get(key);
+        if (count == null) {
+            return 0;
+        }
+        return count.updateAndGet(value -> Math.max(0, value - delta));
+    }
+
+    private static Map<Long, Integer> toMap(ConcurrentMap<Long, AtomicInteger> source) {
+        Map<Long, Integer> result = new HashMap<>();
+        source.forEach((key, count) -> {
+            int value = count.get();
+            if (value > 0) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    private static final class UserCounters {
+        private final ConcurrentMap<Long, AtomicInteger> conversations = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Long, AtomicInteger> rooms = new ConcurrentHashMap<>();
+        // loaded chỉ chuyển false → true; stale được đọc/ghi trong synchronized (this)
+        private volatile boolean loaded;
+        private boolean stale;
+
+        private int totalPrivate() {
+            int total = 0;
+            for (AtomicInteger count : conversations.values()) {
+                total += count.get();
+            }
+            return total;
+        }
+    }
+}
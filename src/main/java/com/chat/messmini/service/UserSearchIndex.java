@@ -0,0 +1,317 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.dto.UserSummary;
+import com.chat.messmini.event.UserProfileChangedEvent;
+import com.chat.messmini.repository.UserRepository;
+import com.chat.messmini.util.LongPostingList;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Index tìm kiếm user trong bộ nhớ trên username và display name.
+ * <p>
+ * Hai cấu trúc: một skip list token → id cho tìm theo tiền tố (username và từng từ của display
+ * name), và một bảng trigram → danh sách id đã sắp xếp cho tìm chuỗi con. Mọi chuỗi được chuẩn
+ * hóa bỏ dấu (NFD, bỏ dấu kết hợp, đ → d) nên "Nguyễn" và "nguyen" khớp nhau.
+ * Kết quả xếp hạng: trùng username, tiền tố username, tiền tố một từ trong tên, rồi chuỗi con.
+ * <p>
+ * Index được nạp một lần từ DB khi ứng dụng khởi động xong; trước khi nạp xong
+ * {@link #isReady()} trả về false để caller quay về truy vấn DB.
+ */
+@Component
+@Slf4j
+public class UserSearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Tiền tố username trước tiền tố một từ trong tên; trong mỗi nhóm chuỗi ngắn hơn (khớp sát
+    // hơn) đứng trước, cùng độ dài thì theo id
+    private static final Comparator<Ranked> PREFIX_RANK = Comparator
+        .comparingInt(Ranked::tier)
+        .thenComparingInt(Ranked::length)
+        .thenComparingLong(ranked -> ranked.entry().id);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, LongPostingList> prefixIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, LongPostingList> trigramIndex = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public UserSearchIndex(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAsync() {
+        Thread loader = new Thread(this::load, "user-search-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<UserSummary> users = userRepository.streamAllSummaries()) {
+                    // Bản ghi đã được cập nhật qua event trong lúc nạp thì mới hơn, giữ nguyên
+                    users.forEach(user -> {
+                        if (!entries.containsKey(user.getId())) {
+                            index(user.getId(), user.getUsername(), user.getDisplayName(), user.getAvatarUrl(), false);
+                        }
+                    });
+                }
+            });
+            ready = true;
+            log.info("User search index loaded: {} users, {} tokens, {} trigrams in {} ms",
+                entries.size(), prefixIndex.size(), trigramIndex.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Error loading user search index, falling back to database search: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        index(event.getUserId(), event.getUsername(), event.getDisplayName(), event.getAvatarUrl(), true);
+    }
+
+    public List<UserSummary> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Set<Long> ids = new LinkedHashSet<>();
+        Entry exact = null;
+        LongPostingList exactIds = prefixIndex.get(normalized);
+        if (exactIds != null) {
+            LongPostingList.Snapshot snapshot = exactIds.snapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                Entry entry = entries.get(snapshot.get(i));
+                if (entry != null && entry.username.equals(normalized)) {
+                    exact = entry;
+                    ids.add(entry.id);
+                    break;
+                }
+            }
+        }
+
+        // Tiền tố: duyệt hết các token khớp rồi mới xếp hạng, giữ `limit` kết quả tốt nhất trong
+        // một max-heap để kết quả không phụ thuộc vào thứ tự từ điển của token
+        PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, PREFIX_RANK.reversed());
+        Set<Long> seen = new HashSet<>();
+        ConcurrentNavigableMap<String, LongPostingList> range =
+            prefixIndex.subMap(normalized, true, normalized + Character.MAX_VALUE, false);
+        for (LongPostingList postings : range.values()) {
+            LongPostingList.Snapshot snapshot = postings.snapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                long id = snapshot.get(i);
+                if (!seen.add(id)) {
+                    continue;
+                }
+                Entry entry = entries.get(id);
+                if (entry == null || entry == exact) {
+                    continue;
+                }
+                best.add(entry.username.startsWith(normalized)
+                    ? new Ranked(entry, 0, entry.username.length())
+                    : new Ranked(entry, 1, entry.normalizedName.length()));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<Ranked> prefixMatches = new ArrayList<>(best);
+        prefixMatches.sort(PREFIX_RANK);
+        prefixMatches.forEach(ranked -> ids.add(ranked.entry().id));
+
+        if (ids.size() < limit && normalized.length() >= 3) {
+            substringMatches(normalized, limit, ids);
+        }
+
+        List<UserSummary> results = new ArrayList<>(Math.min(ids.size(), limit));
+        for (Long id : ids) {
+            if (results.size() == limit) {
+                break;
+            }
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                results.add(new UserSummary(entry.id, entry.originalUsername, entry.displayName, entry.avatarUrl));
+            }
+        }
+        return results;
+    }
+
+    private void substringMatches(String normalized, int limit, Set<Long> ids) {
+        long[] grams = trigrams(normalized);
+        LongPostingList.Snapshot[] postings = new LongPostingList.Snapshot[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            LongPostingList list = trigramIndex.get(grams[i]);
+            if (list == null) {
+                return;
+            }
+            postings[i] = list.snapshot();
+        }
+        // Duyệt danh sách ngắn nhất, kiểm tra các danh sách còn lại bằng tìm nhị phân
+        Arrays.sort(postings, Comparator.comparingInt(LongPostingList.Snapshot::size));
+        LongPostingList.Snapshot smallest = postings[0];
+        for (int i = 0; i < smallest.size() && ids.size() < limit; i++) {
+            long id = smallest.get(i);
+            boolean all = true;
+            for (int p = 1; p < postings.length && all; p++) {
+                all = postings[p].contains(id);
+            }
+            if (!all) {
+                continue;
+            }
+            // Trigram chỉ là điều kiện cần, xác nhận lại chuỗi con trên bản chuẩn hóa
+            Entry entry = entries.get(id);
+            if (entry != null && (entry.username.contains(normalized) || entry.normalizedName.contains(normalized))) {
+                ids.add(id);
+            }
+        }
+    }
+
+    private synchronized void index(Long userId, String username, String displayName, String avatarUrl, boolean replace) {
+        if (!replace && entries.containsKey(userId)) {
+            return;
+        }
+        Entry entry = new Entry(userId, username, displayName, avatarUrl);
+        Entry previous = entries.put(userId, entry);
+
+        Set<String> oldTokens = previous != null ? previous.tokens() : Set.of();
+        Set<String> newTokens = entry.tokens();
+        for (String token : oldTokens) {
+            if (!newTokens.contains(token)) {
+                removePosting(prefixIndex, token, userId);
+            }
+        }
+        for (String token : newTokens) {
+            if (!oldTokens.contains(token)) {
+                prefixIndex.computeIfAbsent(token, t -> new LongPostingList()).add(userId);
+            }
+        }
+
+        Set<Long> oldGrams = previous != null ? previous.trigrams() : Set.of();
+        Set<Long> newGrams = entry.trigrams();
+        for (Long gram : oldGrams) {
+            if (!newGrams.contains(gram)) {
+                removePosting(trigramIndex, gram, userId);
+            }
+        }
+        for (Long gram : newGrams) {
+            if (!oldGrams.contains(gram)) {
+                trigramIndex.computeIfAbsent(gram, g -> new LongPostingList()).add(userId);
+            }
+        }
+    }
+
+    private static <K> void removePosting(ConcurrentMap<K, LongPostingList> index, K key, long userId) {
+        LongPostingList list = index.get(key);
+        if (list != null) {
+            list.remove(userId);
+            if (list.size() == 0) {
+                index.remove(key, list);
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+            .replace('đ', 'd')
+            .replace('Đ', 'D');
+        return WHITESPACE.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static long[] trigrams(String value) {
+        if (value.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[value.length() - 2];
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            grams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    private record Ranked(Entry entry, int tier, int length) {
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final String originalUsername;
+        private final String displayName;
+        private final String avatarUrl;
+        private final String username;
+        private final String normalizedName;
+
+        private Entry(long id, String username, String displayName, String avatarUrl) {
+            this.id = id;
+            this.originalUsername = username;
+            this.displayName = displayName;
+            this.avatarUrl = avatarUrl;
+            this.username = normalize(username);
+            this.normalizedName = normalize(displayName);
+        }
+
+        private Set<String> tokens() {
+            Set<String> tokens = new LinkedHashSet<>();
+            tokens.add(username);
+            if (!normalizedName.isEmpty()) {
+                tokens.add(normalizedName);
+                tokens.addAll(Arrays.asList(normalizedName.split(" ")));
+            }
+            return tokens;
+        }
+
+        private Set<Long> trigrams() {
+            Set<Long> grams = new LinkedHashSet<>();
+            for (long gram : UserSearchIndex.trigrams(username)) {
+                grams.add(gram);
+            }
+            for (long gram : UserSearchIndex.trigrams(normalizedName)) {
+                grams.add(gram);
+            }
+            return grams;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.chat.messmini.service;
 
+import com.chat.messmini.dto.UserSnapshot;
+import com.chat.messmini.dto.UserSummary;
 import com.chat.messmini.entity.User;
+import com.chat.messmini.event.UserProfileChangedEvent;
 import com.chat.messmini.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -12,6 +17,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -20,8 +26,13 @@ import java.util.Optional;
 @RequiredArgsConstructor
 @Slf4j
 public class UserService implements UserDetailsService {
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserSearchIndex userSearchIndex;
+    private final UserSnapshotCache userSnapshotCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -43,21 +54,18 @@ public class UserService implements UserDetailsService {
     }
 
     @Transactional(readOnly = true)
-    public List<User> getOnlineUsers() {
-        return userRepository.findByOnlineTrue();
-    }
-
-    @Transactional
-    public void updateOnlineStatus(String username, boolean online) {
-        userRepository.findByUsername(username).ifPresent(user -> {
-            user.setOnline(online);
-            userRepository.save(user);
-        });
+    public List<UserSummary> getSummaries(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findSummariesByIdIn(userIds);
     }
 
     @Transactional
     public User save(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        publishProfileChanged(saved);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -83,9 +91,9 @@ public class UserService implements UserDetailsService {
             user.setUsername(username);
             user.setPassword(passwordEncoder.encode(password));
             user.setDisplayName(displayName);
-            user.setOnline(false);
 
-            userRepository.save(user);
+            User saved = userRepository.save(user);
+            publishProfileChanged(saved);
             log.info("Successfully registered user: {}", username);
             return true;
         } catch (Exception e) {
@@ -94,9 +102,14 @@ public class UserService implements UserDetailsService {
         }
     }
 
-    public List<User> searchUsers(String query) {
-        log.info("Searching users with query: {}", query);
-        return userRepository.findByUsernameContainingOrDisplayNameContaining(query, query);
+    public List<UserSummary> searchUsers(String query, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS);
+        if (userSearchIndex.isReady()) {
+            return userSearchIndex.search(query, size);
+        }
+        // Index chưa nạp xong (vừa khởi động): tạm dùng truy vấn DB có giới hạn
+        log.debug("User search index not ready, searching database for: {}", query);
+        return userRepository.searchSummaries(query, PageRequest.of(0, size));
     }
 
     public List<User> getAllUsers() {
@@ -108,15 +121,19 @@ public class UserService implements UserDetailsService {
     public void updatePublicKey(Long userId, String publicKey) {
         userRepository.findById(userId).ifPresent(user -> {
             user.setPublicKey(publicKey);
-            userRepository.save(user);
+            publishProfileChanged(userRepository.save(user));
         });
     }
 
     @Transactional(readOnly = true)
     public String getPublicKeyByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .map(User::getPublicKey)
+        return userSnapshotCache.findByUsername(username)
+                .map(UserSnapshot::getPublicKey)
                 .orElse(null);
     }
-}
 
+    private void publishProfileChanged(User user) {
+        eventPublisher.publishEvent(new UserProfileChangedEvent(
+            user.getId(), user.getUsername(), user.getDisplayName(), user.getAvatarUrl()));
+    }
+}
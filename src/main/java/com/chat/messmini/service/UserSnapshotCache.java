@@ -0,0 +1,108 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.UserCacheProperties;
+import com.chat.messmini.dto.UserSnapshot;
+import com.chat.messmini.event.UserProfileChangedEvent;
+import com.chat.messmini.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cache đọc xuyên các {@link UserSnapshot} theo id và theo username cho đường gửi tin nhắn,
+ * thay cho việc load cả entity {@code User} (kèm collection roles eager) ở mỗi tin.
+ * <p>
+ * Khóa username chỉ lưu id (username không đổi sau khi đăng ký), bản chụp nằm duy nhất trong
+ * cache theo id nên một lần invalidate theo id là đủ. Cả hai cache giới hạn theo kích thước và
+ * TTL; số hit/miss/eviction được xuất qua Micrometer dưới tên {@code cache="users.byId"} và
+ * {@code cache="users.byUsername"}.
+ */
+@Component
+@Slf4j
+public class UserSnapshotCache {
+
+    private final UserRepository userRepository;
+    private final LoadingCache<Long, UserSnapshot> byId;
+    private final LoadingCache<String, Long> idByUsername;
+
+    public UserSnapshotCache(UserRepository userRepository,
+                             UserCacheProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.byId = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getExpireAfterWrite())
+            .recordStats()
+            .build(new CacheLoader<>() {
+                @Override
+                public UserSnapshot load(Long id) {
+                    return userRepository.findSnapshotById(id).orElse(null);
+                }
+
+                @Override
+                public Map<Long, UserSnapshot> loadAll(Set<? extends Long> ids) {
+                    Map<Long, UserSnapshot> loaded = new HashMap<>();
+                    userRepository.findSnapshotsByIdIn(ids).forEach(user -> loaded.put(user.getId(), user));
+                    return loaded;
+                }
+            });
+        this.idByUsername = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getExpireAfterWrite())
+            .recordStats()
+            .build(username -> userRepository.findIdByUsername(username).orElse(null));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByUsername, "users.byUsername");
+    }
+
+    public Optional<UserSnapshot> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    public Optional<UserSnapshot> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        Long id = idByUsername.get(username);
+        return id != null ? findById(id) : Optional.empty();
+    }
+
+    /**
+     * Các user tồn tại trong {@code ids}; những id cache chưa có được nạp bằng một truy vấn IN.
+     */
+    public Map<Long, UserSnapshot> getAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return byId.getAll(ids);
+    }
+
+    public void invalidate(Long id) {
+        byId.invalidate(id);
+    }
+
+    /**
+     * Chạy sau commit nên lần nạp kế tiếp đọc được dữ liệu mới; một lần nạp đang chạy cho cùng
+     * khóa sẽ hoàn tất trước khi bị invalidate.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        log.debug("Invalidating cached snapshot of user {}", event.getUserId());
+        invalidate(event.getUserId());
+    }
+}
@@ -0,0 +1,176 @@
+package com.chat.messmini.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * Tập long bất biến, không boxing: mảng id đã sắp xếp để duyệt theo thứ tự và merge,
+ * cộng thêm một bảng băm open-addressing để {@link #contains(long)} là O(1).
+ * Thay đổi bằng {@link #with(long)} / {@link #without(long)} tạo bản sao mới (copy-on-write),
+ * nên có thể chia sẻ giữa các luồng mà không cần khóa.
+ */
+public final class ImmutableLongSet {
+
+    public static final ImmutableLongSet EMPTY = new ImmutableLongSet(new long[0]);
+
+    // 0 được dùng làm ô trống trong bảng băm; id của entity luôn dương
+    private static final long FREE = 0L;
+
+    private final long[] sorted;
+    private final long[] table;
+    private final int mask;
+
+    private ImmutableLongSet(long[] sorted) {
+        this.sorted = sorted;
+        int capacity = Integer.highestOneBit(Math.max(2, sorted.length * 2 - 1)) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+        for (long value : sorted) {
+            int slot = mix(value) & mask;
+            while (table[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+        }
+    }
+
+    public static ImmutableLongSet of(Collection<Long> values) {
+        long[] array = new long[values.size()];
+        int i = 0;
+        for (Long value : values) {
+            array[i++] = value;
+        }
+        return of(array);
+    }
+
+    public static ImmutableLongSet of(long[] values) {
+        long[] copy = values.clone();
+        Arrays.sort(copy);
+        int size = 0;
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] <= FREE) {
+                throw new IllegalArgumentException("Ids must be positive: " + copy[i]);
+            }
+            if (size == 0 || copy[size - 1] != copy[i]) {
+                copy[size++] = copy[i];
+            }
+        }
+        return size == 0 ? EMPTY : new ImmutableLongSet(Arrays.copyOf(copy, size));
+    }
+
+    public boolean contains(long value) {
+        if (value <= FREE) {
+            return false;
+        }
+        int slot = mix(value) & mask;
+        long current;
+        while ((current = table[slot]) != FREE) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public ImmutableLongSet with(long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return this;
+        }
+        if (value <= FREE) {
+            throw new IllegalArgumentException("Ids must be positive: " + value);
+        }
+        int insertion = -index - 1;
+        long[] next = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, next, 0, insertion);
+        next[insertion] = value;
+        System.arraycopy(sorted, insertion, next, insertion + 1, sorted.length - insertion);
+        return new ImmutableLongSet(next);
+    }
+
+    public ImmutableLongSet without(long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return this;
+        }
+        if (sorted.length == 1) {
+            return EMPTY;
+        }
+        long[] next = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, next, 0, index);
+        System.arraycopy(sorted, index + 1, next, index, sorted.length - index - 1);
+        return new ImmutableLongSet(next);
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+
+    public boolean isEmpty() {
+        return sorted.length == 0;
+    }
+
+    /** Phần tử thứ {@code index} theo thứ tự tăng dần. */
+    public long get(int index) {
+        return sorted[index];
+    }
+
+    /** Vị trí của phần tử đầu tiên lớn hơn {@code value}, dùng cho phân trang theo cursor id. */
+    public int indexAfter(long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /** Số phần tử chung với {@code other}, merge hai mảng đã sắp xếp trong O(n + m). */
+    public int intersectionSize(ImmutableLongSet other) {
+        long[] a = sorted;
+        long[] b = other.sorted;
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long value : sorted) {
+            action.accept(value);
+        }
+    }
+
+    public long[] toArray() {
+        return sorted.clone();
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImmutableLongSet other && Arrays.equals(sorted, other.sorted);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(sorted);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(sorted);
+    }
+}
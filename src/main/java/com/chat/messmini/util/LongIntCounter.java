@@ -0,0 +1,147 @@
+package com.chat.messmini.util;
+
+/**
+ * Bộ đếm long → int không boxing (open addressing, linear probing). Key có giá trị 0 sau khi
+ * trừ vẫn giữ chỗ trong bảng và được bỏ qua khi duyệt; chúng bị loại khi bảng được mở rộng.
+ * Không thread-safe: người dùng tự đồng bộ.
+ */
+public final class LongIntCounter {
+
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int used;
+
+    public LongIntCounter() {
+        this(16);
+    }
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int get(long key) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : 0;
+    }
+
+    /** Cộng {@code delta} vào key, không xuống dưới 0; trả về giá trị mới. */
+    public int add(long key, int delta) {
+        if (key <= FREE) {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            if (delta <= 0) {
+                return 0;
+            }
+            slot = insert(key);
+        }
+        values[slot] = Math.max(0, values[slot] + delta);
+        return values[slot];
+    }
+
+    public void set(long key, int value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = Math.max(0, value);
+        } else if (value > 0) {
+            // insert có thể rehash: phải lấy slot trước khi đọc tham chiếu mảng values
+            slot = insert(key);
+            values[slot] = value;
+        }
+    }
+
+    public void remove(long key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = 0;
+        }
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE && values[i] > 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int find(long key) {
+        if (key <= FREE) {
+            return -1;
+        }
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != FREE) {
+            if (current == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        if ((used + 1) * 2 > keys.length) {
+            rehash();
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        used++;
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE && oldValues[i] > 0) {
+                live++;
+            }
+        }
+        // Chỉ mở rộng khi phần lớn key còn sống; nếu không, dọn các key đã về 0 là đủ
+        int capacity = (live + 1) * 4 > oldKeys.length ? oldKeys.length << 1 : oldKeys.length;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE && oldValues[i] > 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used++;
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> sb.append(sb.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return sb.append('}').toString();
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,83 @@
+package com.chat.messmini.util;
+
+import java.util.Arrays;
+
+/**
+ * Danh sách id đã sắp xếp cho index tìm kiếm: ghi có khóa, đọc không khóa.
+ * <p>
+ * Mỗi lần ghi publish một {@link Snapshot} bất biến (mảng + số phần tử) qua field volatile.
+ * Id mới thường lớn hơn id cuối (user đăng ký tăng dần) nên được nối vào phần dư của mảng
+ * mà không phải copy; phần dư đó nằm ngoài {@code size} của các snapshot cũ nên người đọc
+ * không bao giờ thấy dữ liệu đang ghi dở.
+ */
+public final class LongPostingList {
+
+    private volatile Snapshot snapshot = new Snapshot(new long[4], 0);
+
+    public synchronized void add(long id) {
+        Snapshot current = snapshot;
+        long[] ids = current.ids;
+        int size = current.size;
+        if (size > 0 && ids[size - 1] >= id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            int insertion = -index - 1;
+            long[] next = new long[Math.max(ids.length, size + 1)];
+            System.arraycopy(ids, 0, next, 0, insertion);
+            next[insertion] = id;
+            System.arraycopy(ids, insertion, next, insertion + 1, size - insertion);
+            snapshot = new Snapshot(next, size + 1);
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length << 1);
+        }
+        ids[size] = id;
+        snapshot = new Snapshot(ids, size + 1);
+    }
+
+    public synchronized void remove(long id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.ids, 0, current.size, id);
+        if (index < 0) {
+            return;
+        }
+        // Luôn copy để snapshot cũ mà người đọc đang giữ không bị thay đổi
+        long[] next = new long[current.ids.length];
+        System.arraycopy(current.ids, 0, next, 0, index);
+        System.arraycopy(current.ids, index + 1, next, index, current.size - index - 1);
+        snapshot = new Snapshot(next, current.size - 1);
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    public static final class Snapshot {
+        private final long[] ids;
+        private final int size;
+
+        private Snapshot(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long get(int index) {
+            return ids[index];
+        }
+
+        public boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
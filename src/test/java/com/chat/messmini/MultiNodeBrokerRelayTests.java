@@ -0,0 +1,253 @@
+package com.chat.messmini;
+
+import com.chat.messmini.entity.ChatRoom;
+import com.chat.messmini.repository.UserRepository;
+import com.chat.messmini.service.ChatRoomService;
+import com.chat.messmini.service.UserService;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hai instance của ứng dụng trong cùng một JVM (profile {@code embedded}), dùng chung một DB H2
+ * trong bộ nhớ và một ActiveMQ Artemis nhúng làm STOMP broker (thay cho broker ngoài khi chạy thật).
+ * Kiểm tra message gửi trên node A tới được user đang kết nối với node B.
+ */
+class MultiNodeBrokerRelayTests {
+
+    private static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final String PASSWORD = "secret123";
+
+    @TempDir
+    static Path dataDir;
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static Long aliceId;
+    private static Long bobId;
+    private static ThreadPoolTaskScheduler receiptScheduler;
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        int stompPort = freePort();
+        Configuration configuration = new ConfigurationImpl()
+            .setPersistenceEnabled(false)
+            .setSecurityEnabled(false)
+            .setJMXManagementEnabled(false)
+            .addAcceptorConfiguration("stomp",
+                "tcp://127.0.0.1:" + stompPort + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+
+        receiptScheduler = new ThreadPoolTaskScheduler();
+        receiptScheduler.initialize();
+
+        nodeA = startNode("a", stompPort);
+        nodeB = startNode("b", stompPort);
+
+        UserService userService = nodeA.getBean(UserService.class);
+        userService.register("alice", PASSWORD, "Alice");
+        userService.register("bob", PASSWORD, "Bob");
+        UserRepository userRepository = nodeA.getBean(UserRepository.class);
+        aliceId = userRepository.findByUsername("alice").orElseThrow().getId();
+        bobId = userRepository.findByUsername("bob").orElseThrow().getId();
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+        if (receiptScheduler != null) {
+            receiptScheduler.shutdown();
+        }
+    }
+
+    @Test
+    void privateMessageSentOnNodeAReachesUserOnNodeB() throws Exception {
+        StompSession bob = connect(nodeB, "bob");
+        BlockingQueue<Map<String, Object>> bobInbox = subscribe(bob, "/user/queue/messages");
+        StompSession alice = connect(nodeA, "alice");
+
+        alice.send("/app/chat.private", Map.of(
+            "sender", aliceId.toString(),
+            "receiver", bobId.toString(),
+            "content", "xin chào từ node A",
+            "clientMessageId", "cross-node-1"
+        ));
+
+        Map<String, Object> received = bobInbox.poll(15, TimeUnit.SECONDS);
+        assertNotNull(received, "bob on node B did not receive the message sent on node A");
+        assertEquals("xin chào từ node A", received.get("content"));
+        assertEquals(aliceId.intValue(), ((Number) received.get("senderId")).intValue());
+        assertEquals("cross-node-1", received.get("clientMessageId"));
+
+        alice.disconnect();
+        bob.disconnect();
+    }
+
+    @Test
+    void roomMessageSentOnNodeAReachesMemberOnNodeB() throws Exception {
+        ChatRoom room = nodeA.getBean(ChatRoomService.class)
+            .createRoom("cluster", "cross-node room", aliceId, Set.of(bobId));
+
+        StompSession bob = connect(nodeB, "bob");
+        BlockingQueue<Map<String, Object>> roomFeed = subscribe(bob, "/topic/room." + room.getId());
+        StompSession alice = connect(nodeA, "alice");
+
+        alice.send("/app/chat.room", Map.of("roomId", room.getId(), "content", "họp lúc 8h"));
+
+        Map<String, Object> received = roomFeed.poll(15, TimeUnit.SECONDS);
+        assertNotNull(received, "bob on node B did not receive the room message sent on node A");
+        assertEquals("họp lúc 8h", received.get("content"));
+        assertEquals(room.getId().intValue(), ((Number) received.get("roomId")).intValue());
+
+        alice.disconnect();
+        bob.disconnect();
+    }
+
+    private static ConfigurableApplicationContext startNode(String name, int stompPort) {
+        // Profile embedded cho DB H2 dùng chung; tham số dòng lệnh được ưu tiên hơn file properties
+        return new SpringApplicationBuilder(MessminiApplication.class).profiles("embedded").run(
+            "--server.port=0",
+            "--management.server.port=0",
+            "--messmini.broker.mode=relay",
+            "--messmini.broker.relay.host=127.0.0.1",
+            "--messmini.broker.relay.port=" + stompPort,
+            "--messmini.search.index-dir=" + dataDir.resolve("search-" + name)
+        );
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, String username) throws Exception {
+        int port = node.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", "JSESSIONID=" + login(port, username));
+
+        WebSocketStompClient client = new WebSocketStompClient(
+            new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        // RECEIPT chỉ được theo dõi khi client có TaskScheduler
+        client.setTaskScheduler(receiptScheduler);
+        StompSession session = client
+            .connectAsync("http://127.0.0.1:" + port + "/ws", headers, new StompSessionHandlerAdapter() { })
+            .get(10, TimeUnit.SECONDS);
+        session.setAutoReceipt(true);
+        return session;
+    }
+
+    /**
+     * Đăng nhập bằng form login (kèm CSRF token của trang login) và trả về session id đã xác thực.
+     */
+    private static String login(int port, String username) throws Exception {
+        CookieManager cookies = new CookieManager();
+        HttpClient http = HttpClient.newBuilder()
+            .cookieHandler(cookies)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+        String base = "http://127.0.0.1:" + port;
+
+        String loginPage = http.send(HttpRequest.newBuilder(URI.create(base + "/login")).GET().build(),
+            HttpResponse.BodyHandlers.ofString()).body();
+        Matcher csrf = CSRF_TOKEN.matcher(loginPage);
+        assertTrue(csrf.find(), "login page has no CSRF token");
+
+        String form = "username=" + encode(username) + "&password=" + encode(PASSWORD) + "&_csrf=" + encode(csrf.group(1));
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(),
+            HttpResponse.BodyHandlers.discarding());
+        assertTrue(response.headers().firstValue("Location").orElse("").endsWith("/chat"),
+            "login failed for " + username);
+
+        return cookies.getCookieStore().getCookies().stream()
+            .filter(cookie -> cookie.getName().equals("JSESSIONID"))
+            .map(HttpCookie::getValue)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    /**
+     * Subscribe và chờ RECEIPT từ broker để chắc subscription đã được đăng ký trước khi gửi.
+     */
+    private static BlockingQueue<Map<String, Object>> subscribe(StompSession session, String destination)
+            throws InterruptedException {
+        BlockingQueue<Map<String, Object>> inbox = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        StompSession.Subscription subscription = session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                inbox.add((Map<String, Object>) payload);
+            }
+        });
+        subscription.addReceiptTask(subscribed::countDown);
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS), "no receipt for subscription to " + destination);
+        return inbox;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.chat.messmini.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncryptedContentTests {
+
+    @Test
+    void recognizesRsaOaepCiphertextAsSentByTheClient() throws Exception {
+        for (int keyBits : new int[]{2048, 3072}) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(keyBits);
+            KeyPair keyPair = generator.generateKeyPair();
+            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+            String ciphertext = Base64.getEncoder().encodeToString(
+                cipher.doFinal("xin chào".getBytes(StandardCharsets.UTF_8)));
+
+            assertTrue(EncryptedContent.isCiphertext(ciphertext));
+        }
+    }
+
+    @Test
+    void plainTextIsNotCiphertext() {
+        assertFalse(EncryptedContent.isCiphertext(null));
+        assertFalse(EncryptedContent.isCiphertext(""));
+        assertFalse(EncryptedContent.isCiphertext("abcd"));
+        assertFalse(EncryptedContent.isCiphertext("hẹn gặp lúc 8 giờ nhé"));
+        // Base64 hợp lệ nhưng không đúng độ dài một khối RSA
+        assertFalse(EncryptedContent.isCiphertext(Base64.getEncoder().encodeToString(new byte[255])));
+        // Đúng độ dài nhưng không phải Base64
+        assertFalse(EncryptedContent.isCiphertext("!".repeat(344)));
+    }
+}
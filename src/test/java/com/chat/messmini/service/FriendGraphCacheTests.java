@@ -0,0 +1,102 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.FriendCacheProperties;
+import com.chat.messmini.event.FriendshipChangedEvent;
+import com.chat.messmini.repository.FriendshipRepository;
+import com.chat.messmini.util.ImmutableLongSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FriendGraphCacheTests {
+
+    private final FriendshipRepository friendshipRepository = mock(FriendshipRepository.class);
+    private FriendCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FriendCacheProperties();
+    }
+
+    @Test
+    void loadsOnceAndAppliesChangesInPlace() {
+        when(friendshipRepository.findFriendIds(1L)).thenReturn(List.of(2L, 3L));
+        when(friendshipRepository.findFriendIds(4L)).thenReturn(List.of());
+        FriendGraphCache cache = cache();
+
+        assertEquals(ImmutableLongSet.of(List.of(2L, 3L)), cache.friendsOf(1L));
+        cache.friendsOf(4L);
+        cache.onFriendshipChanged(new FriendshipChangedEvent(1L, 4L, true));
+        cache.onFriendshipChanged(new FriendshipChangedEvent(1L, 2L, false));
+
+        assertEquals(ImmutableLongSet.of(List.of(3L, 4L)), cache.friendsOf(1L));
+        assertTrue(cache.areFriends(4L, 1L));
+        verify(friendshipRepository, times(1)).findFriendIds(1L);
+    }
+
+    @Test
+    void loadRacingWithChangeIsNotCached() throws Exception {
+        // Lần nạp đầu đọc DB trước khi quan hệ 1-5 commit; event của quan hệ đó tới khi nạp chưa xong
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        when(friendshipRepository.findFriendIds(1L))
+            .thenAnswer(invocation -> {
+                loading.countDown();
+                assertTrue(changed.await(5, TimeUnit.SECONDS));
+                return List.of(2L);
+            })
+            .thenReturn(List.of(2L, 5L));
+        FriendGraphCache cache = cache();
+
+        CompletableFuture<ImmutableLongSet> first = CompletableFuture.supplyAsync(() -> cache.friendsOf(1L));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.onFriendshipChanged(new FriendshipChangedEvent(1L, 5L, true));
+        changed.countDown();
+
+        assertEquals(ImmutableLongSet.of(List.of(2L)), first.get(5, TimeUnit.SECONDS));
+        assertEquals(ImmutableLongSet.of(List.of(2L, 5L)), cache.friendsOf(1L));
+        verify(friendshipRepository, times(2)).findFriendIds(1L);
+    }
+
+    @Test
+    void evictForcesReload() {
+        when(friendshipRepository.findFriendIds(1L)).thenReturn(List.of(2L));
+        FriendGraphCache cache = cache();
+
+        cache.friendsOf(1L);
+        cache.evict(1L);
+        cache.friendsOf(1L);
+
+        verify(friendshipRepository, times(2)).findFriendIds(1L);
+    }
+
+    @Test
+    void isBoundedBySize() {
+        properties.setMaximumSize(10);
+        when(friendshipRepository.findFriendIds(anyLong())).thenReturn(List.of(1L));
+        FriendGraphCache cache = cache();
+
+        for (long userId = 1; userId <= 1_000; userId++) {
+            cache.friendsOf(userId);
+        }
+
+        assertTrue(cache.cachedUserCount() <= 10, "cached " + cache.cachedUserCount());
+    }
+
+    private FriendGraphCache cache() {
+        return new FriendGraphCache(friendshipRepository, properties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,136 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.SuggestionCacheProperties;
+import com.chat.messmini.dto.FriendSuggestion;
+import com.chat.messmini.dto.UserSummary;
+import com.chat.messmini.event.FriendshipChangedEvent;
+import com.chat.messmini.util.ImmutableLongSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Xếp hạng theo số bạn chung, và bộ đếm cập nhật dần phải cho cùng kết quả với dựng lại từ đầu.
+ */
+class FriendSuggestionServiceTests {
+
+    private final Map<Long, Set<Long>> graph = new HashMap<>();
+    private final FriendGraphCache friendGraphCache = mock(FriendGraphCache.class);
+    private final UserService userService = mock(UserService.class);
+    private final PresenceStore presenceStore = mock(PresenceStore.class);
+
+    @BeforeEach
+    void setUp() {
+        when(friendGraphCache.friendsOf(anyLong())).thenAnswer(invocation ->
+            ImmutableLongSet.of(graph.getOrDefault(invocation.<Long>getArgument(0), Set.of())));
+        when(userService.getSummaries(any())).thenAnswer(invocation -> {
+            List<UserSummary> summaries = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                summaries.add(new UserSummary(id, "user" + id, "User " + id, null));
+            }
+            return summaries;
+        });
+        when(presenceStore.onlineAmong(any())).thenReturn(ImmutableLongSet.of(List.of(6L)));
+    }
+
+    @Test
+    void ranksByMutualFriendsThenById() {
+        befriend(1, 2);
+        befriend(1, 3);
+        befriend(1, 4);
+        befriend(2, 5);
+        befriend(3, 5);
+        befriend(4, 5);
+        befriend(2, 6);
+        befriend(4, 6);
+        befriend(3, 8);
+        befriend(4, 7);
+
+        List<FriendSuggestion> suggestions = service().getSuggestions(1L, 3);
+
+        assertEquals(List.of(5L, 6L, 7L), ids(suggestions));
+        assertEquals(List.of(3, 2, 1), suggestions.stream().map(FriendSuggestion::getMutualFriends).toList());
+        assertEquals(List.of(false, true, false), suggestions.stream().map(FriendSuggestion::isOnline).toList());
+    }
+
+    @Test
+    void noFriendsMeansNoSuggestions() {
+        assertEquals(List.of(), service().getSuggestions(1L, 10));
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuild() {
+        int users = 30;
+        Random random = new Random(11);
+        for (int i = 0; i < 60; i++) {
+            long a = 1 + random.nextInt(users);
+            long b = 1 + random.nextInt(users);
+            if (a != b) {
+                befriend(a, b);
+            }
+        }
+        FriendSuggestionService incremental = service();
+        for (long user = 1; user <= users; user++) {
+            incremental.getSuggestions(user, 50);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            long a = 1 + random.nextInt(users);
+            long b = 1 + random.nextInt(users);
+            if (a == b) {
+                continue;
+            }
+            boolean friends = !graph.getOrDefault(a, Set.of()).contains(b);
+            if (friends) {
+                befriend(a, b);
+            } else {
+                unfriend(a, b);
+            }
+            incremental.onFriendshipChanged(new FriendshipChangedEvent(a, b, friends));
+        }
+
+        FriendSuggestionService rebuilt = service();
+        for (long user = 1; user <= users; user++) {
+            assertEquals(counts(rebuilt.getSuggestions(user, 50)), counts(incremental.getSuggestions(user, 50)),
+                "suggestions of user " + user);
+        }
+    }
+
+    private FriendSuggestionService service() {
+        return new FriendSuggestionService(friendGraphCache, userService, mock(PresenceRegistry.class),
+            presenceStore, new SuggestionCacheProperties(), new SimpleMeterRegistry());
+    }
+
+    private void befriend(long a, long b) {
+        graph.computeIfAbsent(a, id -> new TreeSet<>()).add(b);
+        graph.computeIfAbsent(b, id -> new TreeSet<>()).add(a);
+    }
+
+    private void unfriend(long a, long b) {
+        graph.getOrDefault(a, new TreeSet<>()).remove(b);
+        graph.getOrDefault(b, new TreeSet<>()).remove(a);
+    }
+
+    private static List<Long> ids(List<FriendSuggestion> suggestions) {
+        return suggestions.stream().map(FriendSuggestion::getId).toList();
+    }
+
+    private static List<String> counts(List<FriendSuggestion> suggestions) {
+        return suggestions.stream().map(s -> s.getId() + "=" + s.getMutualFriends()).toList();
+    }
+}
@@ -0,0 +1,197 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * GCRA với đồng hồ giả: thời gian chỉ trôi khi test gọi {@link #advance(long)}.
+ */
+class InboundRateLimiterTests {
+
+    private static final String PRIVATE = "/app/chat.private";
+    private static final String ROOM = "/app/chat.room";
+    private static final String OTHER = "/app/unread";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+    private final RateLimitProperties properties = new RateLimitProperties();
+    private InboundRateLimiter limiter;
+
+    @Test
+    void allowsBurstThenRefillsAtConfiguredRate() {
+        limit(new RateLimitProperties.Rule("*", 100, 100), new RateLimitProperties.Rule(PRIVATE, 2, 3));
+
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(send("alice", PRIVATE), "frame " + i);
+        }
+        assertNull(send("alice", PRIVATE));
+
+        // 2 frame/giây: một token mới sau 500 ms, chưa có trước đó
+        advance(499);
+        assertNull(send("alice", PRIVATE));
+        advance(1);
+        assertNotNull(send("alice", PRIVATE));
+        assertNull(send("alice", PRIVATE));
+    }
+
+    @Test
+    void usersAndDestinationsHaveSeparateBuckets() {
+        limit(new RateLimitProperties.Rule("*", 100, 100), new RateLimitProperties.Rule(PRIVATE, 1, 1),
+            new RateLimitProperties.Rule(ROOM, 1, 1));
+
+        assertNotNull(send("alice", PRIVATE));
+        assertNull(send("alice", PRIVATE));
+        assertNotNull(send("alice", ROOM));
+        assertNotNull(send("bob", PRIVATE));
+    }
+
+    @Test
+    void destinationLimitedFrameDoesNotConsumeUserToken() {
+        // Ô chung còn 2 token; frame bị chặn theo đích không được trừ vào ô chung
+        limit(new RateLimitProperties.Rule("*", 1, 2), new RateLimitProperties.Rule(PRIVATE, 1, 1));
+
+        assertNotNull(send("alice", PRIVATE));
+        for (int i = 0; i < 5; i++) {
+            assertNull(send("alice", PRIVATE));
+        }
+        assertNotNull(send("alice", OTHER));
+        assertNull(send("alice", OTHER));
+    }
+
+    @Test
+    void userLimitedFrameDoesNotConsumeDestinationToken() {
+        limit(new RateLimitProperties.Rule("*", 1, 1), new RateLimitProperties.Rule(PRIVATE, 1, 2));
+
+        assertNotNull(send("alice", OTHER));
+        assertNull(send("alice", PRIVATE));
+        advance(1_000);
+        // Ô của đích vẫn còn đủ 2 token: frame tiếp theo chỉ chờ ô chung
+        assertNotNull(send("alice", PRIVATE));
+        advance(1_000);
+        assertNotNull(send("alice", PRIVATE));
+    }
+
+    @Test
+    void concurrentSendersNeverExceedBurst() throws Exception {
+        // Đồng hồ đứng yên: dù bao nhiêu luồng tranh chấp CAS, số frame được nhận đúng bằng burst
+        // của đích, và token chung bị trả lại cho mọi frame đích từ chối
+        limit(new RateLimitProperties.Rule("*", 1, 1_000), new RateLimitProperties.Rule(PRIVATE, 1, 50));
+        AtomicInteger accepted = new AtomicInteger();
+        List<CompletableFuture<Void>> senders = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            senders.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (send("alice", PRIVATE) != null) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(senders.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(50, accepted.get());
+        for (int i = 0; i < 950; i++) {
+            assertNotNull(send("alice", OTHER), "frame " + i);
+        }
+        assertNull(send("alice", OTHER));
+    }
+
+    @Test
+    void noticeIsSentAtMostOncePerSecond() {
+        limit(new RateLimitProperties.Rule("*", 1, 1));
+
+        send("alice", OTHER);
+        for (int i = 0; i < 10; i++) {
+            send("alice", OTHER);
+        }
+        verify(template, times(1)).convertAndSendToUser(eq("alice"), eq(InboundRateLimiter.ERRORS_QUEUE), anyMap(), anyMap());
+
+        advance(1_000);
+        send("alice", OTHER);
+        send("alice", OTHER);
+        verify(template, times(2)).convertAndSendToUser(eq("alice"), eq(InboundRateLimiter.ERRORS_QUEUE), anyMap(), anyMap());
+    }
+
+    @Test
+    void bucketOutlivesDisconnectUntilFullAgain() {
+        limit(new RateLimitProperties.Rule("*", 100, 100), new RateLimitProperties.Rule(PRIVATE, 1, 2));
+        send("alice", PRIVATE);
+        send("alice", PRIVATE);
+
+        // Kết nối lại ngay không được reset giới hạn
+        limiter.evictFull();
+        assertEquals(1, limiter.trackedUsers());
+        assertNull(send("alice", PRIVATE));
+
+        advance(1_999);
+        limiter.evictFull();
+        assertEquals(1, limiter.trackedUsers());
+
+        advance(1);
+        limiter.evictFull();
+        assertEquals(0, limiter.trackedUsers());
+        assertNotNull(send("alice", PRIVATE));
+        assertNotNull(send("alice", PRIVATE));
+        assertNull(send("alice", PRIVATE));
+    }
+
+    @Test
+    void disabledLimiterPassesEverything() {
+        properties.setEnabled(false);
+        limit(new RateLimitProperties.Rule("*", 1, 1));
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(send("alice", PRIVATE));
+        }
+        assertEquals(0, limiter.trackedUsers());
+    }
+
+    private void limit(RateLimitProperties.Rule user, RateLimitProperties.Rule... destinations) {
+        properties.setUser(user);
+        properties.setDestinations(List.of(destinations));
+        @SuppressWarnings("unchecked")
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(template);
+        limiter = new InboundRateLimiter(provider, properties, new SimpleMeterRegistry(), clock::get);
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private Message<?> send(String username, String destination) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(destination);
+        headers.setSessionId(username + "-session");
+        Principal principal = () -> username;
+        headers.setUser(principal);
+        return limiter.preSend(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()),
+            mock(MessageChannel.class));
+    }
+}
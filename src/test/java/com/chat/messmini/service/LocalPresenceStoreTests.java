@@ -0,0 +1,45 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.PresenceProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalPresenceStoreTests {
+
+    @Test
+    void sweepReportsUsersOfDeadNodeOnce() throws Exception {
+        PresenceProperties properties = new PresenceProperties();
+        properties.setTtl(Duration.ofMillis(50));
+        LocalPresenceStore store = new LocalPresenceStore(properties);
+
+        // Node "dead" ngừng heartbeat; user 2 vẫn còn session trên node "alive"
+        store.sessionsChanged("dead", 1L, 1);
+        store.sessionsChanged("dead", 2L, 1);
+        Thread.sleep(100);
+        properties.setTtl(Duration.ofSeconds(30));
+        store.heartbeat("alive", Map.of(2L, 1));
+
+        assertEquals(List.of(1L), store.sweepExpired());
+        assertFalse(store.isOnline(1L));
+        assertTrue(store.isOnline(2L));
+        assertEquals(List.of(), store.sweepExpired());
+    }
+
+    @Test
+    void gracefulDisconnectIsNotReportedBySweep() {
+        LocalPresenceStore store = new LocalPresenceStore(new PresenceProperties());
+
+        store.sessionsChanged("node", 1L, 1);
+        store.sessionsChanged("node", 1L, 0);
+
+        assertFalse(store.isOnline(1L));
+        assertEquals(List.of(), store.sweepExpired());
+    }
+}
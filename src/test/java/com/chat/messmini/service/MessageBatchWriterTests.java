@@ -0,0 +1,230 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.WriteBehindProperties;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.dto.UserSnapshot;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.model.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageBatchWriterTests {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+    private static final long UNKNOWN = 99L;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final UserSnapshotCache userSnapshotCache = mock(UserSnapshotCache.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextId = new AtomicLong(100);
+    private final WriteBehindProperties properties = new WriteBehindProperties();
+    private volatile boolean failInserts;
+    private volatile CountDownLatch insertStarted;
+    private volatile CountDownLatch insertReleased;
+    private MessageBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(userSnapshotCache.getAll(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, UserSnapshot> users = new HashMap<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                if (id != UNKNOWN) {
+                    users.put(id, new UserSnapshot(id, "user" + id, "User " + id, null, null));
+                }
+            }
+            return users;
+        });
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocation -> {
+            if (failInserts) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            if (insertReleased != null) {
+                insertStarted.countDown();
+                assertTrue(insertReleased.await(5, TimeUnit.SECONDS));
+            }
+            int size = invocation.<BatchPreparedStatementSetter>getArgument(1).getBatchSize();
+            batchSizes.add(size);
+            List<Map<String, Object>> keys = invocation.<KeyHolder>getArgument(2).getKeyList();
+            for (int i = 0; i < size; i++) {
+                keys.add(Map.of("id", nextId.getAndIncrement()));
+            }
+            return new int[size];
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void flushesAsSoonAsBatchIsFull() throws Exception {
+        properties.setBatchSize(3);
+        properties.setMaxLinger(Duration.ofSeconds(30));
+        start();
+
+        List<CompletableFuture<PersistedMessage>> futures = submitAll(3);
+
+        // Không chờ hết linger 30 giây: lô đủ kích thước được commit ngay
+        for (CompletableFuture<PersistedMessage> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(3), batchSizes);
+    }
+
+    @Test
+    void flushesPartialBatchAfterLinger() throws Exception {
+        properties.setBatchSize(100);
+        properties.setMaxLinger(Duration.ofMillis(200));
+        start();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<PersistedMessage>> futures = submitAll(2);
+        for (CompletableFuture<PersistedMessage> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(List.of(2), batchSizes);
+    }
+
+    @Test
+    void completesInCommitOrderOffTheWriterThread() throws Exception {
+        properties.setBatchSize(2);
+        start();
+
+        List<CompletableFuture<PersistedMessage>> futures = submitAll(5);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        futures.forEach(future -> future.whenComplete((message, error) -> threads.add(Thread.currentThread().getName())));
+
+        List<Long> ids = new ArrayList<>();
+        for (CompletableFuture<PersistedMessage> future : futures) {
+            ids.add(future.get(5, TimeUnit.SECONDS).getId());
+        }
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertFalse(threads.contains("chat-write-behind"), threads.toString());
+        assertEquals(5, events.stream().filter(PrivateMessagePersistedEvent.class::isInstance).count());
+    }
+
+    @Test
+    void failedCommitFailsWholeGroupAndWriterKeepsGoing() throws Exception {
+        start();
+        failInserts = true;
+
+        CompletableFuture<PersistedMessage> failed = writer.submit(message(ALICE, BOB));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataAccessResourceFailureException.class, error.getCause());
+        assertTrue(events.isEmpty());
+
+        failInserts = false;
+        assertEquals(BOB, writer.submit(message(ALICE, BOB)).get(5, TimeUnit.SECONDS).getReceiverId());
+    }
+
+    @Test
+    void unknownReceiverFailsOnlyItsOwnMessage() throws Exception {
+        properties.setBatchSize(2);
+        properties.setMaxLinger(Duration.ofSeconds(30));
+        start();
+
+        CompletableFuture<PersistedMessage> unknown = writer.submit(message(ALICE, UNKNOWN));
+        CompletableFuture<PersistedMessage> known = writer.submit(message(ALICE, BOB));
+
+        assertEquals("user2", known.get(5, TimeUnit.SECONDS).getReceiverUsername());
+        assertThrows(ExecutionException.class, () -> unknown.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    @Test
+    void stopTimingOutMidCommitStillCompletesFutures() throws Exception {
+        // Commit kéo dài quá shutdown-timeout: executor hoàn tất không được dừng trước writer
+        properties.setShutdownTimeout(Duration.ofMillis(100));
+        insertStarted = new CountDownLatch(1);
+        insertReleased = new CountDownLatch(1);
+        start();
+
+        CompletableFuture<PersistedMessage> future = writer.submit(message(ALICE, BOB));
+        assertTrue(insertStarted.await(5, TimeUnit.SECONDS));
+        writer.stop();
+        insertReleased.countDown();
+
+        assertEquals(BOB, future.get(5, TimeUnit.SECONDS).getReceiverId());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        properties.setQueueCapacity(1);
+        properties.setEnqueueTimeout(Duration.ZERO);
+        writer = newWriter();
+
+        // Writer chưa chạy: không có gì được nhận
+        CompletableFuture<PersistedMessage> rejected = writer.submit(message(ALICE, BOB));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    private void start() {
+        writer = newWriter();
+        writer.start();
+    }
+
+    private MessageBatchWriter newWriter() {
+        return new MessageBatchWriter(jdbcTemplate, transactionManager, properties, events::add,
+            userSnapshotCache, new SimpleMeterRegistry());
+    }
+
+    private List<CompletableFuture<PersistedMessage>> submitAll(int count) {
+        List<CompletableFuture<PersistedMessage>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(writer.submit(message(ALICE, BOB)));
+        }
+        return futures;
+    }
+
+    private static ChatMessage message(long senderId, long receiverId) {
+        ChatMessage message = new ChatMessage();
+        message.setSenderId(senderId);
+        message.setReceiverId(receiverId);
+        message.setContent("xin chào");
+        return message;
+    }
+}
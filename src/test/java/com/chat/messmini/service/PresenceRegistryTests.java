@@ -0,0 +1,71 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.event.PresenceChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceRegistryTests {
+
+    private final List<PresenceChangedEvent> events = new ArrayList<>();
+    private final PresenceRegistry registry = new PresenceRegistry(event -> {
+        synchronized (events) {
+            events.add((PresenceChangedEvent) event);
+        }
+    });
+
+    @Test
+    void publishesOnlyFirstConnectAndLastDisconnect() {
+        registry.sessionConnected("s1", 1L, "alice");
+        registry.sessionConnected("s2", 1L, "alice");
+        registry.sessionConnected("s1", 1L, "alice");
+        assertEquals(2, registry.sessionCount(1L));
+
+        assertEquals(1L, registry.sessionDisconnected("s1"));
+        assertTrue(registry.isOnline(1L));
+        assertEquals(1L, registry.sessionDisconnected("s2"));
+        assertNull(registry.sessionDisconnected("s2"));
+
+        assertFalse(registry.isOnline(1L));
+        assertNull(registry.usernameOf(1L));
+        assertEquals(List.of(new PresenceChangedEvent(1L, "alice", true),
+            new PresenceChangedEvent(1L, "alice", false)), events);
+    }
+
+    @Test
+    void interleavedConnectsAndDisconnectsKeepTransitionsPaired() throws Exception {
+        // Mỗi luồng liên tục mở rồi đóng session của cùng một user: số transition online và
+        // offline phải bằng nhau, và cuối cùng user không còn session nào
+        int threads = 4;
+        int rounds = 5_000;
+        AtomicInteger sequence = new AtomicInteger();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    String sessionId = "s" + sequence.incrementAndGet();
+                    registry.sessionConnected(sessionId, 1L, "alice");
+                    assertTrue(registry.isOnline(1L));
+                    registry.sessionDisconnected(sessionId);
+                }
+            }));
+        }
+        CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        long online = events.stream().filter(PresenceChangedEvent::isOnline).count();
+        assertEquals(online, events.size() - online);
+        assertTrue(online > 0);
+        assertFalse(registry.isOnline(1L));
+        assertEquals(0, registry.onlineUserCount());
+        assertEquals(0, registry.sessionCount());
+    }
+}
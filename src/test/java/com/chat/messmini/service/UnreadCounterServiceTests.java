@@ -0,0 +1,174 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.config.UnreadCacheProperties;
+import com.chat.messmini.dto.PersistedMessage;
+import com.chat.messmini.event.PrivateMessagePersistedEvent;
+import com.chat.messmini.event.PrivateMessagesReadEvent;
+import com.chat.messmini.repository.MessageRepository;
+import com.chat.messmini.repository.RoomMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sự kiện tới trong lúc bộ đếm đang được nạp từ DB không được làm mất hay cộng trùng delta.
+ */
+class UnreadCounterServiceTests {
+
+    private static final long READER_ID = 1L;
+    private static final long SENDER_ID = 2L;
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final RoomMessageRepository roomMessageRepository = mock(RoomMessageRepository.class);
+    private final UnreadCacheProperties properties = new UnreadCacheProperties();
+    private UnreadCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        when(roomMessageRepository.countUnreadByRoom(anyLong())).thenReturn(List.of());
+        service = service();
+    }
+
+    @Test
+    void messageCommittedAfterLoadReadIsNotLost() throws Exception {
+        // Lần đọc đầu chạy trước commit nên chưa thấy tin, sự kiện tới khi lần đọc chưa xong
+        BlockingLoad load = new BlockingLoad(unread(0), unread(1));
+        when(messageRepository.countUnreadBySender(READER_ID)).thenAnswer(invocation -> load.next());
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> service.snapshot(READER_ID).getTotalPrivate());
+        load.awaitStarted();
+        service.onPrivateMessagePersisted(persisted(100L));
+        load.release();
+
+        assertEquals(0, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, service.snapshot(READER_ID).getTotalPrivate());
+        verify(messageRepository, times(2)).countUnreadBySender(READER_ID);
+    }
+
+    @Test
+    void messageCommittedBeforeLoadReadIsNotCountedTwice() throws Exception {
+        // Lần đọc đầu đã thấy tin, sự kiện của chính tin đó tới khi lần đọc chưa xong
+        BlockingLoad load = new BlockingLoad(unread(1), unread(1));
+        when(messageRepository.countUnreadBySender(READER_ID)).thenAnswer(invocation -> load.next());
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> service.snapshot(READER_ID).getTotalPrivate());
+        load.awaitStarted();
+        service.onPrivateMessagePersisted(persisted(100L));
+        load.release();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, service.snapshot(READER_ID).getTotalPrivate());
+    }
+
+    @Test
+    void deltasAfterLoadAreAppliedInMemory() {
+        when(messageRepository.countUnreadBySender(READER_ID)).thenReturn(unread(1));
+        assertEquals(1, service.snapshot(READER_ID).getTotalPrivate());
+
+        service.onPrivateMessagePersisted(persisted(101L));
+        service.onPrivateMessagePersisted(persisted(102L));
+        service.onPrivateMessagesRead(new PrivateMessagesReadEvent(READER_ID, SENDER_ID, 1));
+
+        assertEquals(2, service.snapshot(READER_ID).getTotalPrivate());
+        verify(messageRepository, times(1)).countUnreadBySender(READER_ID);
+    }
+
+    @Test
+    void concurrentDeltasAfterLoadAreNotLost() throws Exception {
+        when(messageRepository.countUnreadBySender(READER_ID)).thenReturn(unread(0));
+        service.snapshot(READER_ID);
+
+        int threads = 4;
+        int perThread = 500;
+        List<CompletableFuture<Void>> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            senders.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    service.onPrivateMessagePersisted(persisted(i));
+                }
+            }));
+        }
+        CompletableFuture.allOf(senders.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(threads * perThread, service.snapshot(READER_ID).getTotalPrivate());
+    }
+
+    @Test
+    void countersLoadedWithoutSessionAreBoundedBySize() {
+        // Bộ đếm nạp qua REST /unread của user không mở WebSocket không bao giờ nhận event offline
+        properties.setMaximumSize(10);
+        service = service();
+
+        for (long userId = 1; userId <= 1_000; userId++) {
+            service.roomUnread(userId, 1L);
+        }
+
+        assertTrue(service.cachedUserCount() <= 10, "cached " + service.cachedUserCount());
+    }
+
+    private UnreadCounterService service() {
+        return new UnreadCounterService(messageRepository, roomMessageRepository,
+            mock(PresenceRegistry.class), mock(SimpMessagingTemplate.class), properties, new SimpleMeterRegistry());
+    }
+
+    private static PrivateMessagePersistedEvent persisted(long id) {
+        return new PrivateMessagePersistedEvent(new PersistedMessage(id, SENDER_ID, "sender", READER_ID, "reader",
+            "hi", LocalDateTime.now(), false, false));
+    }
+
+    private static List<Object[]> unread(long count) {
+        return count == 0 ? List.of() : List.<Object[]>of(new Object[]{SENDER_ID, count});
+    }
+
+    /**
+     * Lần gọi đầu chặn tới khi {@link #release()}; các lần sau trả kết quả thứ hai ngay.
+     */
+    private static final class BlockingLoad {
+        private final List<Object[]> first;
+        private final List<Object[]> then;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private boolean called;
+
+        private BlockingLoad(List<Object[]> first, List<Object[]> then) {
+            this.first = first;
+            this.then = then;
+        }
+
+        private List<Object[]> next() throws InterruptedException {
+            synchronized (this) {
+                if (called) {
+                    return then;
+                }
+                called = true;
+            }
+            started.countDown();
+            assertTrue(released.await(5, TimeUnit.SECONDS));
+            return first;
+        }
+
+        private void awaitStarted() throws InterruptedException {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        private void release() {
+            released.countDown();
+        }
+    }
+}
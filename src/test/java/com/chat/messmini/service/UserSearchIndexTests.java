@@ -0,0 +1,69 @@
+package com.chat.messmini.service;
+
+import com.chat.messmini.dto.UserSummary;
+import com.chat.messmini.event.UserProfileChangedEvent;
+import com.chat.messmini.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class UserSearchIndexTests {
+
+    private final UserSearchIndex index =
+        new UserSearchIndex(mock(UserRepository.class), mock(PlatformTransactionManager.class));
+
+    @Test
+    void ranksExactThenUsernamePrefixThenNamePrefixThenSubstring() {
+        add(1, "xanh", "Bầu Trời");
+        add(2, "anhtuan", "Tuấn");
+        add(3, "anh", "Anh");
+        add(4, "minh", "Ánh Dương");
+        add(5, "an", "Hải");
+
+        assertEquals(List.of("anh", "anhtuan", "minh", "xanh"), usernames(index.search("Anh", 10)));
+    }
+
+    @Test
+    void usernamePrefixesAreRankedBeforeLimitIsApplied() {
+        // Các token của tên đứng trước "bao..." trong thứ tự từ điển và có id nhỏ hơn: trước đây
+        // lượt tiền tố dừng ở `limit` mục đầu tiên gặp được và bỏ sót các username khớp
+        for (int id = 1; id <= 20; id++) {
+            add(id, "user" + id, "Ba" + (char) ('a' + id % 26) + " Nguyễn");
+        }
+        add(100, "baongoc", "Ngọc");
+        add(101, "bao", "Bảo");
+        add(102, "baobao", "Bảo Bảo");
+
+        assertEquals(List.of("bao", "baobao", "baongoc"), usernames(index.search("ba", 3)));
+    }
+
+    @Test
+    void closerNamePrefixWinsRegardlessOfTokenOrder() {
+        add(1, "u1", "Minh Longlongname");
+        add(2, "u2", "Minh Lo");
+        add(3, "u3", "Minh Lon");
+
+        assertEquals(List.of("u2", "u3"), usernames(index.search("lo", 2)));
+    }
+
+    @Test
+    void profileChangeReindexesTokens() {
+        add(1, "alice", "Alice");
+        add(1, "alice", "Carol");
+
+        assertEquals(List.of(), usernames(index.search("ali ce", 5)));
+        assertEquals(List.of("alice"), usernames(index.search("car", 5)));
+    }
+
+    private void add(long id, String username, String displayName) {
+        index.onUserProfileChanged(new UserProfileChangedEvent(id, username, displayName, null));
+    }
+
+    private static List<String> usernames(List<UserSummary> results) {
+        return results.stream().map(UserSummary::getUsername).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package com.chat.messmini.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImmutableLongSetTests {
+
+    @Test
+    void ofSortsAndDeduplicates() {
+        ImmutableLongSet set = ImmutableLongSet.of(new long[]{5, 3, 9, 3, 1, 9});
+
+        assertArrayEquals(new long[]{1, 3, 5, 9}, set.toArray());
+        assertEquals(4, set.size());
+        assertEquals(1, set.get(0));
+        assertEquals(9, set.get(3));
+        assertTrue(set.contains(5));
+        assertFalse(set.contains(4));
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    void emptyInputGivesSharedEmptySet() {
+        assertSame(ImmutableLongSet.EMPTY, ImmutableLongSet.of(List.of()));
+        assertSame(ImmutableLongSet.EMPTY, ImmutableLongSet.of(new long[0]));
+        assertTrue(ImmutableLongSet.EMPTY.isEmpty());
+        assertFalse(ImmutableLongSet.EMPTY.contains(1));
+    }
+
+    @Test
+    void rejectsNonPositiveIds() {
+        assertThrows(IllegalArgumentException.class, () -> ImmutableLongSet.of(new long[]{1, 0}));
+        assertThrows(IllegalArgumentException.class, () -> ImmutableLongSet.of(List.of(-3L)));
+        assertThrows(IllegalArgumentException.class, () -> ImmutableLongSet.of(new long[]{2}).with(0));
+    }
+
+    @Test
+    void withAndWithoutCopyOnWrite() {
+        ImmutableLongSet original = ImmutableLongSet.of(new long[]{2, 4, 6});
+
+        ImmutableLongSet added = original.with(5);
+        ImmutableLongSet removed = added.without(2);
+
+        assertArrayEquals(new long[]{2, 4, 6}, original.toArray());
+        assertArrayEquals(new long[]{2, 4, 5, 6}, added.toArray());
+        assertArrayEquals(new long[]{4, 5, 6}, removed.toArray());
+        assertTrue(added.contains(5));
+        assertFalse(removed.contains(2));
+        assertSame(original, original.with(4));
+        assertSame(original, original.without(3));
+        assertSame(ImmutableLongSet.EMPTY, ImmutableLongSet.of(new long[]{7}).without(7));
+    }
+
+    @Test
+    void indexAfterFindsCursorPosition() {
+        ImmutableLongSet set = ImmutableLongSet.of(new long[]{10, 20, 30});
+
+        assertEquals(0, set.indexAfter(0));
+        assertEquals(1, set.indexAfter(10));
+        assertEquals(1, set.indexAfter(15));
+        assertEquals(3, set.indexAfter(30));
+        assertEquals(3, set.indexAfter(99));
+    }
+
+    @Test
+    void intersectionSizeMergesSortedArrays() {
+        ImmutableLongSet a = ImmutableLongSet.of(new long[]{1, 3, 5, 7, 9});
+        ImmutableLongSet b = ImmutableLongSet.of(new long[]{2, 3, 4, 9, 10});
+
+        assertEquals(2, a.intersectionSize(b));
+        assertEquals(2, b.intersectionSize(a));
+        assertEquals(0, a.intersectionSize(ImmutableLongSet.EMPTY));
+        assertEquals(5, a.intersectionSize(a));
+    }
+
+    @Test
+    void equalityIsByContent() {
+        ImmutableLongSet a = ImmutableLongSet.of(new long[]{3, 1, 2});
+        ImmutableLongSet b = ImmutableLongSet.of(List.of(1L, 2L, 3L));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals("[1, 2, 3]", a.toString());
+    }
+
+    @Test
+    void containsMatchesReferenceSetUnderRandomEdits() {
+        // Bảng băm open-addressing phải khớp một TreeSet qua nhiều lần with/without ngẫu nhiên
+        Random random = new Random(42);
+        TreeSet<Long> expected = new TreeSet<>();
+        ImmutableLongSet actual = ImmutableLongSet.EMPTY;
+        for (int i = 0; i < 2_000; i++) {
+            long value = 1 + random.nextInt(300);
+            if (random.nextBoolean()) {
+                expected.add(value);
+                actual = actual.with(value);
+            } else {
+                expected.remove(value);
+                actual = actual.without(value);
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), actual.toArray());
+        for (long value = 0; value <= 301; value++) {
+            assertEquals(expected.contains(value), actual.contains(value), "contains(" + value + ")");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.chat.messmini.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongIntCounterTests {
+
+    @Test
+    void addAccumulatesAndNeverGoesNegative() {
+        LongIntCounter counter = new LongIntCounter();
+
+        assertEquals(1, counter.add(7, 1));
+        assertEquals(3, counter.add(7, 2));
+        assertEquals(0, counter.add(7, -5));
+        // Trừ vào key chưa có không tạo key mới
+        assertEquals(0, counter.add(8, -1));
+        assertEquals(0, counter.get(7));
+        assertEquals(0, counter.get(8));
+        assertEquals("{}", counter.toString());
+    }
+
+    @Test
+    void setAndRemove() {
+        LongIntCounter counter = new LongIntCounter();
+
+        counter.set(3, 4);
+        counter.set(5, 0);
+        counter.set(6, -2);
+        assertEquals(4, counter.get(3));
+        assertEquals("{3=4}", counter.toString());
+
+        counter.remove(3);
+        counter.remove(99);
+        assertEquals(0, counter.get(3));
+        assertEquals("{}", counter.toString());
+    }
+
+    @Test
+    void setNewKeysThroughGrowth() {
+        LongIntCounter counter = new LongIntCounter(2);
+        for (long key = 1; key <= 100; key++) {
+            counter.set(key, (int) key);
+        }
+
+        for (long key = 1; key <= 100; key++) {
+            assertEquals((int) key, counter.get(key));
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveKeys() {
+        LongIntCounter counter = new LongIntCounter();
+
+        assertThrows(IllegalArgumentException.class, () -> counter.add(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> counter.add(-1, 1));
+        assertEquals(0, counter.get(0));
+    }
+
+    @Test
+    void forEachSkipsZeroedKeys() {
+        LongIntCounter counter = new LongIntCounter(4);
+        counter.add(1, 1);
+        counter.add(2, 2);
+        counter.add(3, 3);
+        counter.add(2, -2);
+
+        Map<Long, Integer> seen = new HashMap<>();
+        counter.forEach(seen::put);
+
+        assertEquals(Map.of(1L, 1, 3L, 3), seen);
+    }
+
+    @Test
+    void matchesReferenceMapThroughGrowthAndCleanup() {
+        // Nhiều key bị đưa về 0 rồi thêm key mới: rehash vừa mở rộng vừa dọn key chết
+        Random random = new Random(7);
+        LongIntCounter counter = new LongIntCounter(2);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = 1 + random.nextInt(500);
+            int delta = random.nextInt(5) - 2;
+            int value = counter.add(key, delta);
+            int reference = Math.max(0, expected.getOrDefault(key, 0) + delta);
+            if (reference == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, reference);
+            }
+            assertEquals(reference, value);
+        }
+
+        Map<Long, Integer> actual = new HashMap<>();
+        counter.forEach(actual::put);
+        assertEquals(expected, actual);
+        for (long key = 1; key <= 500; key++) {
+            assertEquals(expected.getOrDefault(key, 0), counter.get(key));
+        }
+    }
+}
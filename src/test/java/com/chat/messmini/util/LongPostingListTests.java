@@ -0,0 +1,81 @@
+package com.chat.messmini.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongPostingListTests {
+
+    @Test
+    void keepsIdsSortedAndUnique() {
+        LongPostingList list = new LongPostingList();
+        for (long id : new long[]{5, 1, 9, 5, 3, 12, 1}) {
+            list.add(id);
+        }
+
+        assertContents(list.snapshot(), 1, 3, 5, 9, 12);
+        assertTrue(list.snapshot().contains(9));
+        assertFalse(list.snapshot().contains(4));
+    }
+
+    @Test
+    void removeIgnoresMissingIds() {
+        LongPostingList list = new LongPostingList();
+        list.add(1);
+        list.add(2);
+
+        list.remove(7);
+        list.remove(1);
+
+        assertContents(list.snapshot(), 2);
+        list.remove(2);
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    void oldSnapshotsAreNotChangedByLaterWrites() {
+        LongPostingList list = new LongPostingList();
+        list.add(10);
+        list.add(20);
+        LongPostingList.Snapshot before = list.snapshot();
+
+        // Nối đuôi ghi vào phần dư của cùng mảng, chèn giữa và xóa thì copy
+        list.add(30);
+        list.add(15);
+        list.remove(10);
+
+        assertContents(before, 10, 20);
+        assertContents(list.snapshot(), 15, 20, 30);
+    }
+
+    @Test
+    void matchesReferenceSetUnderRandomEdits() {
+        Random random = new Random(7);
+        TreeSet<Long> expected = new TreeSet<>();
+        LongPostingList list = new LongPostingList();
+        for (int i = 0; i < 5_000; i++) {
+            long id = 1 + random.nextInt(500);
+            if (random.nextInt(3) > 0) {
+                expected.add(id);
+                list.add(id);
+            } else {
+                expected.remove(id);
+                list.remove(id);
+            }
+        }
+
+        assertContents(list.snapshot(), expected.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private static void assertContents(LongPostingList.Snapshot snapshot, long... expected) {
+        assertEquals(expected.length, snapshot.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], snapshot.get(i), "index " + i);
+        }
+    }
+}